@@ -0,0 +1,41 @@
+package soltrchess.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite with the GC profiler, so every result comes
+ * with its allocation rate (gc.alloc.rate.norm is bytes per operation).
+ * The benchmarks are the SolitaireChessBench module, which needs a "jmh"
+ * library of jmh-core and jmh-generator-annprocess 1.37 (with jopt-simple
+ * and commons-math3) and annotation processing turned on, so JMH can
+ * generate its benchmark list. Run it from the project directory so data/
+ * is found, with the SolitaireChess classes, JavaFX and JMH on the class
+ * path:
+ * <pre>
+ * java -cp out/production/SolitaireChess:out/production/SolitaireChessBench:lib/* \
+ *     soltrchess.bench.BenchmarkMain [regex] [-rf json -rff before.json]
+ * </pre>
+ * Any of JMH's own options may be given, e.g. a regex such as
+ * "SolverBenchmark.solveCorpus" to pick benchmarks, or -wi and -i for
+ * fewer iterations. To measure a change, save a result file before it and
+ * another after it with -rff, and compare the two.
+ */
+public class BenchmarkMain {
+    /**
+     * Run the benchmarks.
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if an option is not understood
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
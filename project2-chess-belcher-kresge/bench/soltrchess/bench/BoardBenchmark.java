@@ -0,0 +1,73 @@
+package soltrchess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import soltrchess.backtracking.Configuration;
+import soltrchess.backtracking.SoltrChessConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The backtracker's per-node work on one board: generating successors,
+ * all at once or only the first, checking a successor against its parent,
+ * and the goal test.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    /** the board to work on, a file in the data directory */
+    @Param({"game43.txt", "game52.txt", "game59.txt"})
+    public String board;
+
+    /** the board */
+    private SoltrChessConfig config;
+    /** its successors */
+    private List<Configuration> successors;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        config = Boards.load(board);
+        successors = new ArrayList<>(config.getSuccessors());
+    }
+
+    @Benchmark
+    public Collection<Configuration> getSuccessors() {
+        return config.getSuccessors();
+    }
+
+    @Benchmark
+    public Configuration firstSuccessor() {
+        return config.successors().next();
+    }
+
+    @Benchmark
+    public void isValid(Blackhole blackhole) {
+        for (Configuration child : successors) {
+            blackhole.consume(child.isValid(config));
+        }
+    }
+
+    @Benchmark
+    public boolean isGoal() {
+        return config.isGoal();
+    }
+}
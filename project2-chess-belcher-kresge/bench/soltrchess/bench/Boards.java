@@ -0,0 +1,72 @@
+package soltrchess.bench;
+
+import soltrchess.backtracking.PuzzleFile;
+import soltrchess.backtracking.PuzzleGenerator;
+import soltrchess.backtracking.SoltrChessConfig;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Where the benchmarks get their boards. Files are read from the data
+ * directory, which is "data" under the working directory unless the
+ * soltrchess.data system property says otherwise, and generated boards
+ * come from a fixed seed so every run measures the same puzzles.
+ */
+final class Boards {
+    /** system property naming the directory of puzzle files */
+    static final String DATA_PROPERTY = "soltrchess.data";
+    /** seed for the generated corpus */
+    private static final long SEED = 20_161_117L;
+
+    private Boards() {}
+
+    /**
+     * Find a puzzle file in the data directory.
+     *
+     * @param name the file's name, e.g. "game43.txt"
+     * @return the file's path
+     */
+    static String path(String name) {
+        return Paths.get(System.getProperty(DATA_PROPERTY, "data"), name).toString();
+    }
+
+    /**
+     * Read a puzzle from the data directory.
+     *
+     * @param name the file's name, e.g. "game43.txt"
+     * @return the board
+     * @throws IOException if the file cannot be read
+     */
+    static SoltrChessConfig load(String name) throws IOException {
+        return PuzzleFile.read(path(name)).toConfig();
+    }
+
+    /**
+     * Make the same set of solvable 4x4 puzzles every time, using the
+     * piece mix of the real game.
+     *
+     * @param count number of puzzles
+     * @param pieces pieces on each board
+     * @return the puzzles
+     * @throws IllegalStateException if the generator runs out of new boards
+     */
+    static List<SoltrChessConfig> generate(int count, int pieces) {
+        PuzzleGenerator generator = new PuzzleGenerator(4, 4, pieces, new int[] {0, 2, 2, 2, 2, 1, 1},
+                1, Long.MAX_VALUE);
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<SoltrChessConfig> boards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SoltrChessConfig board = generator.next(random);
+            if (board == null) {
+                throw new IllegalStateException("could only generate " + i + " of " + count
+                        + " distinct boards with " + pieces + " pieces");
+            }
+            boards.add(board);
+        }
+        return boards;
+    }
+}
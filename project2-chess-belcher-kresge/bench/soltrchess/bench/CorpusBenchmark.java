@@ -0,0 +1,107 @@
+package soltrchess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import soltrchess.backtracking.PuzzleCorpus;
+import soltrchess.backtracking.PuzzleFile;
+import soltrchess.backtracking.SoltrChessConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading a corpus of puzzles: one text file per puzzle read with
+ * PuzzleFile, against the same puzzles packed into a PuzzleCorpus and read
+ * with a cursor. The files are written to a temporary directory once per
+ * trial, so the text side is measured with the files in the page cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CorpusBenchmark {
+    /** number of puzzles in the corpus */
+    private static final int SIZE = 2000;
+    /** pieces on each puzzle */
+    private static final int PIECES = 8;
+
+    /** where the files are written */
+    private Path directory;
+    /** one text file per puzzle */
+    private List<Path> files;
+    /** the packed corpus */
+    private Path packed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("soltrchess-corpus");
+        files = new ArrayList<>(SIZE);
+        packed = directory.resolve("corpus.scc");
+        try (PuzzleCorpus.Writer writer = PuzzleCorpus.create(packed)) {
+            int number = 0;
+            for (SoltrChessConfig board : Boards.generate(SIZE, PIECES)) {
+                String label = ++number + ". Generated";
+                Path file = directory.resolve("game" + number + ".txt");
+                Files.writeString(file, PuzzleFile.format(board, label));
+                files.add(file);
+                writer.add(board, label, null);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public long readTextFiles() throws IOException {
+        long hashes = 0;
+        for (Path file : files) {
+            hashes += PuzzleFile.read(file).toConfig().getHash();
+        }
+        return hashes;
+    }
+
+    @Benchmark
+    public long readCorpus() throws IOException {
+        long hashes = 0;
+        PuzzleCorpus.Cursor cursor = PuzzleCorpus.open(packed).cursor();
+        while (cursor.next()) {
+            hashes += cursor.toConfig().getHash();
+        }
+        return hashes;
+    }
+
+    @Benchmark
+    public long scanCorpus() throws IOException {
+        long pieces = 0;
+        PuzzleCorpus.Cursor cursor = PuzzleCorpus.open(packed).cursor();
+        while (cursor.next()) {
+            pieces += cursor.getPieceCount();
+        }
+        return pieces;
+    }
+}
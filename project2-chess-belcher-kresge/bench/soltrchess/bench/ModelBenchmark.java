@@ -0,0 +1,75 @@
+package soltrchess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import soltrchess.model.SoltrChessModel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The model's move handling as the GUI and PTUI drive it. The model
+ * prints to standard output on every square it looks at; that output is
+ * thrown away during the benchmark so the numbers are the model's own work
+ * and not the console's.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+    /** the rook at (1,2) of game59 takes the pawn at (3,2) */
+    private static final int FROM_ROW = 1;
+    private static final int FROM_COL = 2;
+    private static final int TO_ROW = 3;
+    private static final int TO_COL = 2;
+
+    /** the model, on game59 */
+    private SoltrChessModel model;
+    /** the real standard output, put back after the benchmark */
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        model = new SoltrChessModel(Boards.path("game59.txt"), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public boolean isValidMove() {
+        return model.isValidMove(FROM_ROW, FROM_COL, TO_ROW, TO_COL);
+    }
+
+    /**
+     * Select the rook and then its target, as two clicks would, and undo
+     * the capture afterwards through the model, so its legal moves and
+     * history stay in step with the board. makeMove takes the column first.
+     */
+    @Benchmark
+    public SoltrChessModel.PIECE[][] makeMove() {
+        model.makeMove(FROM_COL, FROM_ROW);
+        model.makeMove(TO_COL, TO_ROW);
+        model.undo();
+        return model.getBoard();
+    }
+}
@@ -0,0 +1,118 @@
+package soltrchess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import soltrchess.backtracking.Backtracker;
+import soltrchess.backtracking.IterativeBacktracker;
+import soltrchess.backtracking.MoveList;
+import soltrchess.backtracking.SoltrChessConfig;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole solves on every board in data/ and on a generated corpus, with
+ * either engine. The recursive engine is Backtracker.solveWithPath with a
+ * fresh backtracker per solve, as SoltrChessConfig.main does. The iterative
+ * engine is one IterativeBacktracker per thread, kept between solves the
+ * way BatchSolver keeps it, so its frames are reused; neither has a memo,
+ * so no search results carry over between invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+    /** number of boards in the generated corpus */
+    private static final int CORPUS_SIZE = 200;
+    /** pieces on each generated board */
+    private static final int CORPUS_PIECES = 8;
+
+    /** which solver to run */
+    @Param({"recursive", "iterative"})
+    public String engine;
+
+    /** the iterative engine, reused by every solve on this thread */
+    private final IterativeBacktracker iterative = new IterativeBacktracker();
+
+    /**
+     * Boards from data/, one solve per invocation.
+     */
+    @State(Scope.Thread)
+    public static class DataBoard {
+        /** the board to solve, a file in the data directory */
+        @Param({"game00.txt", "game01.txt", "game23.txt", "game43.txt", "game52.txt", "game59.txt",
+                "gameTester.txt"})
+        public String board;
+
+        /** run the dead-end test before each subtree */
+        @Param({"true", "false"})
+        public boolean pruning;
+
+        /** the board */
+        SoltrChessConfig config;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            config = Boards.load(board);
+        }
+    }
+
+    /**
+     * The generated corpus, all of it solved per invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class Corpus {
+        /** run the dead-end test before each subtree */
+        @Param({"true", "false"})
+        public boolean pruning;
+
+        /** the boards */
+        List<SoltrChessConfig> boards;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            boards = Boards.generate(CORPUS_SIZE, CORPUS_PIECES);
+        }
+    }
+
+    @Benchmark
+    public MoveList solveDataBoard(DataBoard data) {
+        return solve(data.config, data.pruning);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void solveCorpus(Corpus corpus, Blackhole blackhole) {
+        for (SoltrChessConfig board : corpus.boards) {
+            blackhole.consume(solve(board, corpus.pruning));
+        }
+    }
+
+    /**
+     * Solve one board with the chosen engine.
+     */
+    private MoveList solve(SoltrChessConfig board, boolean pruning) {
+        if (engine.equals("iterative")) {
+            iterative.setPruning(pruning);
+            return iterative.solveWithPath(board);
+        }
+        Backtracker backtracker = new Backtracker();
+        backtracker.setPruning(pruning);
+        return backtracker.solveWithPath(board);
+    }
+}
@@ -1,4 +1,6 @@
 module SolitaireChess {
     requires transitive javafx.controls;
+    requires jdk.jfr;
+    requires jdk.httpserver;
     exports soltrchess.gui;
 }
\ No newline at end of file
@@ -2,9 +2,10 @@ package soltrchess;
 
 import soltrchess.gui.SoltrChessGUI;
 import soltrchess.ptui.SoltrChessPTUI;
+import soltrchess.server.SolveServer;
 import javafx.application.Application;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 /**
  * Here is a class capable of starting up both the GUI and PTUI
@@ -16,20 +17,20 @@ import java.io.FileNotFoundException;
 public class SoltrChess {
     public static final int CMD_LINE_ERROR = 1;
 
-    enum UIMode { huh, gui, ptui }
+    enum UIMode { huh, gui, ptui, server }
 
     private static void usage() {
         System.err.println(
-                "Usage: java SoltrChess ( gui | ptui ) config-file" );
+                "Usage: java SoltrChess ( gui | ptui ) config-file | server port" );
         System.exit( CMD_LINE_ERROR );
     }
 
     /**
      * Start up a Chess Solitaire game in a terminal window or GUI.
      * @param args string array containing [0] "solitarechess.gui" or "solitarechess.ptui";
-     *             [1] the game's configuration file
+     *             [1] the game's configuration file, or the port for "server"
      */
-    public static void main( String[] args ) throws FileNotFoundException {
+    public static void main( String[] args ) throws IOException {
         UIMode mode = UIMode.huh;
         System.out.println( "Welcome to Solitaire Chess!" );
         String fileName = null;
@@ -66,6 +67,9 @@ public class SoltrChess {
                 SoltrChessPTUI ui = new SoltrChessPTUI( fileName );
                 ui.run();
                 break;
+            case server:
+                SolveServer.main( new String[] { fileName } );
+                break;
             default:
                 usage();
         }
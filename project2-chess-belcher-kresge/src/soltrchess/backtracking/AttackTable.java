@@ -0,0 +1,139 @@
+package soltrchess.backtracking;
+
+import static soltrchess.backtracking.SoltrChessConfig.*;
+
+/**
+ * Precomputed capture masks for every piece type on every square of a board
+ * of one size. Bit t of attacks[piece][s] is set if that piece standing on
+ * square s may capture a piece standing on square t, squares being numbered
+ * row * cols + col. The table is built once per board size from the same
+ * movement rules the model uses, so move generation and validation are mask
+ * lookups instead of the Math.abs checks.
+ */
+final class AttackTable {
+    /** the largest number of rows or columns on a board */
+    static final int MAX_DIM = 8;
+    /** tables already built, indexed by rows and columns */
+    private static final AttackTable[][] TABLES = new AttackTable[MAX_DIM + 1][MAX_DIM + 1];
+
+    /** the number of rows */
+    final int rows;
+    /** the number of columns */
+    final int cols;
+    /** the number of squares */
+    final int squares;
+    /** capture masks indexed by piece code, then square */
+    final long[][] attacks;
+    /**
+     * where each square goes under each symmetry, indexed by the symmetry's
+     * ordinal, then square; null for symmetries that do not fit this shape
+     */
+    final byte[][] images;
+
+    private AttackTable(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.squares = rows * cols;
+        this.attacks = new long[LETTERS.length()][squares];
+        for (int piece = PAWN; piece < LETTERS.length(); piece++) {
+            for (int from = 0; from < squares; from++) {
+                long mask = 0;
+                for (int to = 0; to < squares; to++) {
+                    if (canCapture(piece, from / cols, from % cols, to / cols, to % cols)) {
+                        mask |= 1L << to;
+                    }
+                }
+                attacks[piece][from] = mask;
+            }
+        }
+        this.images = new byte[Symmetry.values().length][];
+        for (Symmetry symmetry : Symmetry.values()) {
+            if (symmetry.fits(rows, cols, false)) {
+                images[symmetry.ordinal()] = new byte[squares];
+                for (int square = 0; square < squares; square++) {
+                    images[symmetry.ordinal()][square] = (byte) symmetry.apply(square, rows, cols);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the table for a board size, building it the first time.
+     *
+     * @param rows the number of rows, 1 to 8
+     * @param cols the number of columns, 1 to 8
+     * @return the table
+     */
+    static AttackTable of(int rows, int cols) {
+        if (rows < 1 || cols < 1 || rows > MAX_DIM || cols > MAX_DIM) {
+            throw new IllegalArgumentException("Board must be 1x1 to 8x8, not " + rows + "x" + cols);
+        }
+        synchronized (TABLES) {
+            if (TABLES[rows][cols] == null) {
+                TABLES[rows][cols] = new AttackTable(rows, cols);
+            }
+            return TABLES[rows][cols];
+        }
+    }
+
+    /**
+     * Can a piece move from A to B? The rules for each type of piece; pieces
+     * do not block each other.
+     *
+     * @param piece the piece code of the moving piece
+     * @param aRow row the piece is on
+     * @param aCol column the piece is on
+     * @param bRow row being captured on
+     * @param bCol column being captured on
+     * @return true if the move follows the piece's rules
+     */
+    static boolean canCapture(int piece, int aRow, int aCol, int bRow, int bCol) {
+        //checks to make sure square you're going to isn't same as square you're in
+        if (aRow==bRow &&aCol==bCol) {
+            return false;
+        }
+        switch (piece) {
+            case PAWN:
+                return (aRow-1==bRow && (aCol-1==bCol||aCol+1==bCol));
+            case BISHOP:
+                return (Math.abs((bCol - aCol)) == Math.abs((bRow - aRow)));
+            case ROOK:
+                //case if moving vertically
+                if (bCol == aCol) {
+                    return (Math.abs(bRow - aRow) > 0);
+                }
+                //case if moving horizontally
+                else if (bRow == aRow) {
+                    return (Math.abs(bCol - aCol) > 0);
+                } else {
+                    return false;
+                }
+            case KING:
+                if (bRow == aRow) {
+                    return (Math.abs(bCol - aCol) == 1);
+                }
+                else if (bCol == aCol) {
+                    return (Math.abs(bRow - aRow) == 1);
+                }
+                else {
+                    return (Math.abs(bRow - aRow) == 1 && Math.abs(bCol - aCol) == 1);
+                }
+            case QUEEN:
+                //uses combination of rook and bishop cases
+                if (bCol == aCol) {
+                    return (Math.abs(bRow - aRow) > 0);
+                }
+                //case if moving horizontally
+                else if (bRow == aRow) {
+                    return (Math.abs(bCol - aCol) > 0);
+                } else {
+                    return (Math.abs((bCol - aCol)) == Math.abs((bRow - aRow)));
+                }
+            case KNIGHT:
+                //checks if knight's total movement is equivalent to three spaces
+                return ((Math.abs(bRow - aRow) + Math.abs(bCol - aCol) == 3) && (Math.abs(bRow - aRow) != 3) && Math.abs(bCol - aCol) != 3);
+
+        }
+        return false;
+    }
+}
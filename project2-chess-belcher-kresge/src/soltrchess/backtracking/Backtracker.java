@@ -6,8 +6,14 @@ package soltrchess.backtracking;/*
  * implement.
  */
 
-import java.util.List;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class represents the classic recursive solitarechess.backtracking algorithm.
@@ -17,7 +23,43 @@ import java.util.Optional;
  * @author RIT CS
  */
 public class Backtracker {
-    
+    /** the most positions countSolutions() remembers, about 40 MB of table */
+    public static final int MAX_COUNTED_POSITIONS = 1 << 20;
+
+    /** positions proven to have no solution, null if not remembering */
+    private final TranspositionTable memo;
+    /** solution counts of positions, made by the first countSolutions() */
+    private SolutionCountTable counts;
+    /** configurations visited so far */
+    private long nodes;
+    /** configurations cut off by the dead-end test so far */
+    private long pruned;
+    /** which successors to try first */
+    private MoveOrdering ordering = MoveOrdering.GENERATED;
+    /** is the dead-end test run before searching a configuration? */
+    private boolean pruning = true;
+    /** told about every step of the search, null if nobody is watching */
+    private SolverListener listener;
+
+    /**
+     * Create a backtracker that does not remember dead positions.
+     */
+    public Backtracker() {
+        this(null);
+    }
+
+    /**
+     * Create a backtracker that skips positions it has already proven to
+     * have no solution. The same position is often reached by capturing in
+     * a different order, so this avoids searching it again.
+     *
+     * @param memo table of dead positions, may be shared between solves;
+     *             null to turn memoization off
+     */
+    public Backtracker(TranspositionTable memo) {
+        this.memo = memo;
+    }
+
     /**
      * Try find a solution, if one exists, for a given configuration.
      * 
@@ -25,30 +67,352 @@ public class Backtracker {
      * @return A solution config, or null if no solution
      */
     public Optional<Configuration> solve(Configuration config) {
-        if (config.isGoal()) {
+        return instrumented("solve", config, () -> solve(config, 0), Optional::isPresent);
+    }
+
+    /**
+     * The recursive search behind solve().
+     *
+     * @param config the configuration to search from
+     * @param depth number of moves made to reach config
+     * @return a goal configuration, or empty if there is none
+     */
+    private Optional<Configuration> solve(Configuration config, int depth) {
+        if (isGoal(config, depth)) {
             return Optional.of(config);
         } else {
-            for (Configuration child : config.getSuccessors()) {
-                if (child.isValid(config)) {
-                    Optional<Configuration> sol = solve(child);
-                    if (sol.isPresent()) {
-                        return sol;
-                    }
+            if (isPruned(config, depth)) {
+                return Optional.empty();
+            }
+            long hash = memo == null ? 0 : config.getCanonicalHash();
+            if (isKnownDead(hash, depth)) {
+                return Optional.empty();
+            }
+            long start = nodes;
+            for (Iterator<Configuration> children = children(config, depth); children.hasNext(); ) {
+                Optional<Configuration> sol = solve(children.next(), depth + 1);
+                if (sol.isPresent()) {
+                    return sol;
                 }
             }
             // implicit solitarechess.backtracking happens here
+            if (hash != 0) {
+                memo.markDead(hash, nodes - start);
+            }
         } 
         return Optional.empty();
     }
 
+    /**
+     * Every solution from a configuration, found lazily: the tree is only
+     * searched as far as is needed to produce the solutions taken from the
+     * stream.
+     *
+     * @param config the starting configuration
+     * @return a stream of solutions in search order
+     */
+    public Stream<MoveList> solutions(Configuration config) {
+        if (config.isGoal()) {
+            return Stream.of(new MoveList(0));
+        }
+        return StreamSupport.stream(new SolutionSpliterator(config), false);
+    }
+
+    /**
+     * Count the distinct solutions from a configuration, stopping once the
+     * count reaches a limit. Each position's count is remembered, so a
+     * position reached by several capture orders is only searched once.
+     * At most MAX_COUNTED_POSITIONS are remembered; past that, positions are
+     * counted without being remembered, so the answer is still exact but
+     * the search may go over some of them again.
+     *
+     * @param config the starting configuration
+     * @param limit stop counting at this many, e.g. 2 to check that a
+     *              puzzle's solution is unique
+     * @return the number of solutions, at most limit
+     */
+    public long countSolutions(Configuration config, long limit) {
+        if (counts == null) {
+            counts = new SolutionCountTable(MAX_COUNTED_POSITIONS);
+        }
+        counts.clear();
+        return instrumented("countSolutions", config, () -> countSolutions(config, limit, 0), count -> count > 0);
+    }
+
+    /**
+     * Count solutions below a configuration.
+     *
+     * @param config the configuration to count from
+     * @param limit stop counting at this many; every count is capped at
+     *              the same limit so remembered counts stay comparable, and
+     *              a remembered count of limit means "limit or more"
+     * @param depth number of moves made to reach config
+     * @return the number of solutions, at most limit
+     */
+    private long countSolutions(Configuration config, long limit, int depth) {
+        if (isGoal(config, depth)) {
+            return 1;
+        }
+        if (isPruned(config, depth)) {
+            return 0;
+        }
+        long hash = config.getCanonicalHash();
+        if (hash != 0) {
+            long known = counts.get(hash);
+            if (listener != null) {
+                listener.memoProbed(depth, known >= 0);
+            }
+            if (known >= 0) {
+                return known;
+            }
+        }
+        long count = 0;
+        for (Iterator<Configuration> children = children(config, depth); children.hasNext(); ) {
+            count += countSolutions(children.next(), limit, depth + 1);
+            if (count >= limit) {
+                count = limit;
+                break;
+            }
+        }
+        if (hash != 0) {
+            counts.put(hash, count);
+        }
+        return count;
+    }
+
+    /**
+     * Run one top-level search, telling the listener how it went and
+     * recording a JFR event for it if a recording has asked for them. While
+     * JFR is recording the search is measured by a SolverMetrics of its
+     * own, as well as by the listener.
+     *
+     * @param search the name of the search, e.g. "solve"
+     * @param config the starting configuration
+     * @param body the search itself
+     * @param solved whether the search's result is a solution
+     * @return the search's result
+     */
+    private <T> T instrumented(String search, Configuration config, Supplier<T> body, Predicate<T> solved) {
+        SolveEvent event = new SolveEvent();
+        if (!event.isEnabled()) {
+            T result = body.get();
+            if (listener != null) {
+                listener.searchFinished(solved.test(result));
+            }
+            return result;
+        }
+        SolverListener outer = listener;
+        SolverMetrics metrics = new SolverMetrics();
+        listener = outer == null ? metrics : SolverListener.both(outer, metrics);
+        long startNodes = nodes;
+        long startPruned = pruned;
+        event.begin();
+        T result;
+        try {
+            result = body.get();
+        } finally {
+            listener = outer;
+        }
+        event.end();
+        boolean found = solved.test(result);
+        if (outer != null) {
+            outer.searchFinished(found);
+        }
+        if (event.shouldCommit()) {
+            event.search = search;
+            event.startHash = config.getHash();
+            event.solved = found;
+            event.nodes = nodes - startNodes;
+            event.pruned = pruned - startPruned;
+            event.expanded = metrics.getExpanded();
+            event.generated = metrics.getGenerated();
+            event.rejected = metrics.getRejected();
+            event.memoProbes = metrics.getMemoProbes();
+            event.memoHits = metrics.getMemoHits();
+            event.maxDepth = metrics.getMaxDepth();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Visit a configuration: count it and run the goal test.
+     */
+    private boolean isGoal(Configuration config, int depth) {
+        nodes++;
+        boolean goal = config.isGoal();
+        if (listener != null) {
+            listener.goalChecked(depth, goal);
+        }
+        return goal;
+    }
+
+    /**
+     * Run the dead-end test if pruning is on, counting the configurations
+     * it cuts off.
+     */
+    private boolean isPruned(Configuration config, int depth) {
+        if (pruning && config.isDeadEnd()) {
+            pruned++;
+            if (listener != null) {
+                listener.pruned(depth);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Look a position up in the memo of dead positions.
+     *
+     * @param hash the position's canonical hash, 0 if it is not remembered
+     */
+    private boolean isKnownDead(long hash, int depth) {
+        if (hash == 0) {
+            return false;
+        }
+        boolean dead = memo.isDead(hash);
+        if (listener != null) {
+            listener.memoProbed(depth, dead);
+        }
+        return dead;
+    }
+
+    /**
+     * Get a configuration's valid successors in the order to try them.
+     * With no ordering and no listener they come from the lazy
+     * Configuration.successors(), so children after a solution are never
+     * made; otherwise they are all generated first, to be sorted and
+     * counted, and checked one at a time as they are reached.
+     */
+    private Iterator<Configuration> children(Configuration config, int depth) {
+        if (ordering == MoveOrdering.GENERATED && listener == null) {
+            return config.successors();
+        }
+        Collection<Configuration> successors = ordering.order(config, config.getSuccessors());
+        if (listener != null) {
+            listener.successorsGenerated(depth, successors.size());
+        }
+        return new ValidSuccessors(successors.iterator(), child -> isValid(child, config, depth));
+    }
+
+    /** @return true if child is a valid successor of parent */
+    private boolean isValid(Configuration child, Configuration parent, int depth) {
+        boolean valid = child.isValid(parent);
+        if (!valid && listener != null) {
+            listener.successorRejected(depth);
+        }
+        return valid;
+    }
+
+    /**
+     * Watch the search. The listener is told about every node, so it should
+     * be quick; with no listener the search pays only a null check.
+     *
+     * @param listener the listener, or null for none
+     */
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the listener watching the search.
+     *
+     * @return the listener, or null if there is none
+     */
+    public SolverListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Choose which successors to try first.
+     *
+     * @param ordering the ordering, MoveOrdering.GENERATED for the order the
+     *                 configurations generate them in
+     */
+    public void setOrdering(MoveOrdering ordering) {
+        this.ordering = ordering;
+    }
+
+    /**
+     * Turn the dead-end test on or off. It is on by default.
+     *
+     * @param pruning true to skip configurations that are known dead ends
+     */
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Get the number of configurations the dead-end test has cut off. Each
+     * one is counted in getNodes() too, but none of the tree under it is.
+     *
+     * @return pruned configuration count
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    /**
+     * Get the number of configurations visited by this backtracker.
+     *
+     * @return node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the memo of dead positions.
+     *
+     * @return the table, or null if memoization is off
+     */
+    public TranspositionTable getMemo() {
+        return memo;
+    }
+
     /**
      * Find a goal configuration if it exists, and how to get there.
      * @param current the starting configuration
-     * @return a list of configurations to get to a goal configuration.
+     * @return the moves that get to a goal configuration.
      *         If there are none, return null.
      */
-    public List< Configuration > solveWithPath( Configuration current ) {
-        // YOUR CODE HERE
+    public MoveList solveWithPath( Configuration current ) {
+        return instrumented("solveWithPath", current, () -> solveWithPath( current, 0 ), Objects::nonNull);
+    }
+
+    /**
+     * Search for a goal, recording the moves on the way back up. The list
+     * is only created once a goal is reached, at its final length, and each
+     * level writes its own move into it as the recursion unwinds.
+     *
+     * @param config the configuration to search from
+     * @param depth number of moves made to reach config
+     * @return the moves from the starting configuration, or null
+     */
+    private MoveList solveWithPath( Configuration config, int depth ) {
+        if (isGoal(config, depth)) {
+            return new MoveList(depth);
+        }
+        if (isPruned(config, depth)) {
+            return null;
+        }
+        long hash = memo == null ? 0 : config.getCanonicalHash();
+        if (isKnownDead(hash, depth)) {
+            return null;
+        }
+        long start = nodes;
+        for (Iterator<Configuration> children = children(config, depth); children.hasNext(); ) {
+            Configuration child = children.next();
+            MoveList sol = solveWithPath(child, depth + 1);
+            if (sol != null) {
+                sol.set(depth, child.getMove());
+                return sol;
+            }
+        }
+        if (hash != 0) {
+            memo.markDead(hash, nodes - start);
+        }
         return null;
     }
 
@@ -0,0 +1,406 @@
+package soltrchess.backtracking;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Solves many puzzle files in one JVM. Files are handed to a fixed pool of
+ * worker threads, with only a few per thread in flight at a time, and each
+ * result is written as one line of NDJSON as soon as it is ready:
+ * <pre>
+ * {"file":"data/game01.txt","label":"1. Easy","solved":true,"moves":[[2,0,1,1],[1,1,0,0]],"nodes":4,"pruned":1,"millis":0.05}
+ * </pre>
+ * Each move is [fromRow,fromCol,toRow,toCol]. A throughput summary goes to
+ * standard error at the end.
+ * <p>
+ * Puzzles are solved in their canonical orientation and the moves turned
+ * back, so a puzzle that is a mirror image of one already in the batch is
+ * not searched again; its line shows 0 nodes. Only the most recent
+ * canonical boards are remembered, so a corpus of any size runs in bounded
+ * memory. With a solution cache, puzzles solved by earlier runs are not
+ * searched either.
+ */
+public class BatchSolver {
+    /** puzzles queued per worker thread */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+    /** canonical boards whose solutions are remembered for duplicates */
+    private static final int REMEMBERED = 1 << 14;
+
+    /** number of worker threads */
+    private final int threads;
+    /** each worker's backtracker, kept with its frames and memo for the whole batch */
+    private final ThreadLocal<IterativeBacktracker> backtrackers;
+    /**
+     * solutions of the latest canonical boards, oldest dropped first; a null
+     * solution means unsolvable. A dropped board that turns up again is
+     * only solved again, and anyone already waiting on it keeps its future.
+     */
+    private final Map<SoltrChessConfig, CompletableFuture<MoveList>> canonicalSolutions =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<SoltrChessConfig, CompletableFuture<MoveList>> eldest) {
+                    return size() > REMEMBERED;
+                }
+            });
+    /** solutions from earlier runs, null if there is no cache */
+    private volatile SolutionCache cache;
+
+    /**
+     * Create a batch solver.
+     *
+     * @param threads number of worker threads
+     * @param memoBytes memory cap for each worker's memo of dead positions,
+     *                  0 to turn memoization off. Dead positions stay dead
+     *                  from puzzle to puzzle, so a worker's memo is kept for
+     *                  the whole batch.
+     */
+    public BatchSolver(int threads, long memoBytes) {
+        this(threads, memoBytes, null, true);
+    }
+
+    /**
+     * Create a batch solver with a choice of search heuristics.
+     *
+     * @param threads number of worker threads
+     * @param memoBytes memory cap for each worker's memo of dead positions,
+     *                  0 to turn memoization off
+     * @param ordering which captures each worker tries first, null for
+     *                 the order they are generated in
+     * @param pruning true to skip boards the dead-end test rules out
+     */
+    public BatchSolver(int threads, long memoBytes, CaptureOrdering ordering, boolean pruning) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+        this.backtrackers = ThreadLocal.withInitial(() -> {
+            IterativeBacktracker backtracker =
+                    new IterativeBacktracker(memoBytes > 0 ? new TranspositionTable(memoBytes) : null);
+            backtracker.setOrdering(ordering);
+            backtracker.setPruning(pruning);
+            return backtracker;
+        });
+    }
+
+    /**
+     * The outcome of solving one puzzle.
+     */
+    public static class Result {
+        /** the puzzle file */
+        public final Path file;
+        /** the label line of the file, null if it has none */
+        public final String label;
+        /** the number of columns on the board */
+        public final int cols;
+        /** the solution, null if there is none or the file was bad */
+        public final MoveList moves;
+        /** configurations visited */
+        public final long nodes;
+        /** configurations cut off by the dead-end test */
+        public final long pruned;
+        /** time spent solving, in nanoseconds */
+        public final long nanos;
+        /** why the file could not be solved, null if it was read */
+        public final String error;
+
+        Result(Path file, String label, int cols, MoveList moves, long nodes, long pruned, long nanos, String error) {
+            this.file = file;
+            this.label = label;
+            this.cols = cols;
+            this.moves = moves;
+            this.nodes = nodes;
+            this.pruned = pruned;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        /**
+         * This result as one line of JSON, without the newline.
+         *
+         * @return the JSON object
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder("{\"file\":");
+            quote(json, file.toString());
+            if (error != null) {
+                json.append(",\"error\":");
+                quote(json, error);
+                return json.append('}').toString();
+            }
+            json.append(",\"label\":");
+            if (label == null) {
+                json.append("null");
+            } else {
+                quote(json, label);
+            }
+            json.append(",\"solved\":").append(moves != null);
+            json.append(",\"moves\":[");
+            for (int i = 0; moves != null && i < moves.size(); i++) {
+                int from = moves.getFrom(i);
+                int to = moves.getTo(i);
+                json.append(i == 0 ? "[" : ",[")
+                        .append(from / cols).append(',').append(from % cols).append(',')
+                        .append(to / cols).append(',').append(to % cols).append(']');
+            }
+            json.append("],\"nodes\":").append(nodes);
+            json.append(",\"pruned\":").append(pruned);
+            json.append(",\"millis\":").append(nanos / 1_000_000.0);
+            return json.append('}').toString();
+        }
+
+        private static void quote(StringBuilder json, String text) {
+            json.append('"');
+            for (char c : text.toCharArray()) {
+                switch (c) {
+                    case '"': json.append("\\\""); break;
+                    case '\\': json.append("\\\\"); break;
+                    case '\n': json.append("\\n"); break;
+                    case '\r': json.append("\\r"); break;
+                    case '\t': json.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            json.append('"');
+        }
+    }
+
+    /**
+     * Solve one puzzle file on the calling thread.
+     *
+     * @param file the puzzle file
+     * @return the result; a file that cannot be read or solved gets a
+     *         result with an error
+     */
+    public Result solve(Path file) {
+        String label;
+        SoltrChessConfig config;
+        try {
+            PuzzleFile puzzle = PuzzleFile.read(file);
+            config = puzzle.toConfig();
+            label = puzzle.getLabel();
+        } catch (IOException | RuntimeException e) {
+            return new Result(file, null, 0, null, 0, 0, 0, e.toString());
+        }
+        IterativeBacktracker backtracker = backtrackers.get();
+        long nodes = backtracker.getNodes();
+        long pruned = backtracker.getPruned();
+        long start = System.nanoTime();
+        Symmetry symmetry = config.canonicalSymmetry();
+        SoltrChessConfig canonical = config.transform(symmetry);
+        CompletableFuture<MoveList> mine = new CompletableFuture<>();
+        CompletableFuture<MoveList> first = canonicalSolutions.putIfAbsent(canonical, mine);
+        MoveList moves;
+        try {
+            if (first == null) {
+                first = mine;
+                try {
+                    mine.complete(solveCanonical(backtracker, canonical));
+                } catch (RuntimeException e) {
+                    // duplicates waiting on this board get the same error,
+                    // later ones try it again
+                    canonicalSolutions.remove(canonical, mine);
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            // a duplicate being solved by another worker is waited for
+            moves = first.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            return new Result(file, label, config.getCols(), null, backtracker.getNodes() - nodes,
+                    backtracker.getPruned() - pruned, System.nanoTime() - start, cause.toString());
+        }
+        if (moves != null) {
+            moves = moves.transform(symmetry.inverse(), config.getRows(), config.getCols());
+        }
+        long nanos = System.nanoTime() - start;
+        return new Result(file, label, config.getCols(), moves, backtracker.getNodes() - nodes,
+                backtracker.getPruned() - pruned, nanos, null);
+    }
+
+    /**
+     * Solve a canonical board, through the cache if there is one.
+     */
+    private MoveList solveCanonical(IterativeBacktracker backtracker, SoltrChessConfig canonical) {
+        SolutionCache cache = this.cache;
+        if (cache != null) {
+            try {
+                return cache.solve(canonical, backtracker::solveWithPath);
+            } catch (IOException e) {
+                System.err.println("Solution cache dropped: " + e.getMessage());
+                this.cache = null;
+            }
+        }
+        return backtracker.solveWithPath(canonical);
+    }
+
+    /**
+     * Use a cache of solutions from earlier runs.
+     *
+     * @param cache the cache, null for none
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Solve a list of puzzle files on the worker pool, writing a line of
+     * NDJSON for each as it finishes. Results come out in the order they
+     * finish, not the order of the list.
+     *
+     * @param files the puzzle files
+     * @param out where to write the NDJSON
+     * @return a summary of the batch
+     * @throws IOException if writing fails
+     */
+    public String solveAll(List<Path> files, Writer out) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ExecutorCompletionService<Result> done = new ExecutorCompletionService<>(pool);
+        long start = System.nanoTime();
+        int solved = 0;
+        int errors = 0;
+        long nodes = 0;
+        long pruned = 0;
+        try {
+            int submitted = 0;
+            int finished = 0;
+            while (finished < files.size()) {
+                // keep the queue short so huge corpora don't sit in memory
+                while (submitted < files.size() && submitted - finished < threads * IN_FLIGHT_PER_THREAD) {
+                    Path file = files.get(submitted++);
+                    done.submit(() -> solve(file));
+                }
+                Result result = take(done);
+                finished++;
+                out.write(result.toJson());
+                out.write('\n');
+                if (result.error != null) {
+                    errors++;
+                } else if (result.moves != null) {
+                    solved++;
+                }
+                nodes += result.nodes;
+                pruned += result.pruned;
+            }
+        } finally {
+            pool.shutdownNow();
+            out.flush();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format("%d puzzles (%d solved, %d unsolvable, %d errors) in %.3f seconds: "
+                        + "%.1f puzzles/s, %d nodes (%d pruned), %.0f nodes/s, %d threads",
+                files.size(), solved, files.size() - solved - errors, errors, seconds,
+                files.size() / seconds, nodes, pruned, nodes / seconds, threads);
+    }
+
+    private static Result take(ExecutorCompletionService<Result> done) throws IOException {
+        try {
+            Future<Result> future = done.take();
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Expand the command line's paths: directories are searched for .txt
+     * puzzle files, in name order; files are taken as they are.
+     *
+     * @param paths files and directories
+     * @return the puzzle files
+     * @throws IOException if a directory cannot be read
+     */
+    public static List<Path> puzzleFiles(List<String> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : paths) {
+            Path path = Paths.get(name);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files.addAll(walk.filter(Files::isRegularFile)
+                            .filter(p -> p.getFileName().toString().endsWith(".txt"))
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * The batch program.
+     * @param args [-threads n] [-memo megabytes] [-order name] [-noprune] [-o output.ndjson]
+     *             file-or-directory...
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long memoBytes = 16L << 20;
+        CaptureOrdering ordering = null;
+        boolean pruning = true;
+        String output = null;
+        String cacheFile = System.getProperty(SolutionCache.PROPERTY);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-memo" -> memoBytes = Long.parseLong(args[++i]) << 20;
+                case "-order" -> ordering = CaptureOrdering.valueOf(args[++i]);
+                case "-noprune" -> pruning = false;
+                case "-o" -> output = args[++i];
+                case "-cache" -> cacheFile = args[++i];
+                default -> paths.add(args[i]);
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: java BatchSolver [-threads n] [-memo megabytes] [-order name] [-noprune] "
+                    + "[-cache file] [-o output.ndjson] file-or-directory...");
+            return;
+        }
+        List<Path> files = puzzleFiles(paths);
+        BatchSolver solver = new BatchSolver(threads, memoBytes, ordering, pruning);
+        SolutionCache cache = cacheFile == null ? null
+                : SolutionCache.open(Paths.get(cacheFile), SolutionCache.DEFAULT_ENTRIES,
+                        SolutionCache.DEFAULT_MAX_BYTES);
+        solver.setCache(cache);
+        try (Writer out = output == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(output))) {
+            System.err.println(solver.solveAll(files, out));
+        } finally {
+            if (cache != null) {
+                System.err.println(cache);
+                cache.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package soltrchess.backtracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Move orderings for Solitaire Chess. Each gives every capture a score
+ * and tries the lowest scores first; captures with equal scores keep the
+ * order they were generated in.
+ */
+public enum CaptureOrdering implements MoveOrdering {
+    /**
+     * Capture with the piece that has the fewest targets first, before it
+     * is left with nothing to capture.
+     */
+    MOST_CONSTRAINED_FIRST {
+        @Override
+        int score(SoltrChessConfig board, int from, int to) {
+            return Long.bitCount(board.targets(from));
+        }
+    },
+    /**
+     * Take the piece that the fewest others attack first, before nothing
+     * is left that can capture it. This does best on the advanced data/
+     * puzzles.
+     */
+    LEAST_ATTACKED_FIRST {
+        @Override
+        int score(SoltrChessConfig board, int from, int to) {
+            return board.countAttackers(to);
+        }
+    },
+    /**
+     * Try the captures that leave the fewest moves first, so dead ends
+     * are found while the tree under them is still small.
+     */
+    FEWEST_REPLIES {
+        @Override
+        int score(SoltrChessConfig board, int from, int to) {
+            int victim = board.makeMove(from, to);
+            int replies = board.countMoves();
+            board.unmakeMove(from, to, victim);
+            return replies;
+        }
+    };
+
+    /** successors an ordering can sort; the index is kept in 16 bits */
+    private static final int MAX_SUCCESSORS = 1 << 16;
+
+    /**
+     * Score a capture.
+     *
+     * @param board the board before the capture; the score may make and
+     *              unmake moves on it but must leave it as it was
+     * @param from square of the capturing piece
+     * @param to square of the captured piece
+     * @return the score, from 0 to 32767; lower is tried first
+     */
+    abstract int score(SoltrChessConfig board, int from, int to);
+
+    /**
+     * Sort a buffer of moves into this ordering, in place. Each entry must
+     * hold a move code in its low 16 bits; the high bits are overwritten.
+     *
+     * @param board the board the moves are for, left as it was
+     * @param moves the buffer
+     * @param count number of moves in the buffer
+     */
+    void sort(SoltrChessConfig board, int[] moves, int count) {
+        for (int i = 0; i < count; i++) {
+            int move = moves[i] & (MAX_SUCCESSORS - 1);
+            moves[i] = score(board, MoveList.fromOf(move), MoveList.toOf(move)) << 16 | move;
+        }
+        Arrays.sort(moves, 0, count);
+        for (int i = 0; i < count; i++) {
+            moves[i] &= MAX_SUCCESSORS - 1;
+        }
+    }
+
+    @Override
+    public Collection<Configuration> order(Configuration parent, Collection<Configuration> successors) {
+        if (!(parent instanceof SoltrChessConfig) || successors.size() < 2 || successors.size() > MAX_SUCCESSORS) {
+            return successors;
+        }
+        List<Configuration> children = successors instanceof List
+                ? (List<Configuration>) successors
+                : new ArrayList<>(successors);
+        // sort score and index together as ints, so no comparator or boxing;
+        // the scores are worked out on a copy the heuristic may move on
+        SoltrChessConfig board = new SoltrChessConfig((SoltrChessConfig) parent, -1, -1, "-");
+        int[] keys = new int[children.size()];
+        for (int i = 0; i < keys.length; i++) {
+            SoltrChessConfig child = (SoltrChessConfig) children.get(i);
+            keys[i] = score(board, child.getFrom(), child.getTo()) << 16 | i;
+        }
+        Arrays.sort(keys);
+        List<Configuration> ordered = new ArrayList<>(keys.length);
+        for (int key : keys) {
+            ordered.add(children.get(key & (MAX_SUCCESSORS - 1)));
+        }
+        return ordered;
+    }
+}
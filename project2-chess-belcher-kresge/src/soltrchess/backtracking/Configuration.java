@@ -1,6 +1,8 @@
 package soltrchess.backtracking;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Predicate;
 
 /**
  * The representation of a single configuration for a puzzle.
@@ -18,6 +20,37 @@ public interface Configuration {
      */
     public Collection< Configuration > getSuccessors();
 
+    /**
+     * Get the valid successors one at a time. Each is only made when it is
+     * asked for, so a search that finds a solution under the first child
+     * never builds the rest. Configurations that only implement
+     * getSuccessors() are adapted by building that collection and checking
+     * each child with isValid() as it is reached; puzzles that can make
+     * their children lazily should override this.
+     *
+     * @return the valid successors, in the order getSuccessors() gives them
+     */
+    public default Iterator< Configuration > successors() {
+        return new ValidSuccessors(this);
+    }
+
+    /**
+     * Hand each valid successor to an action, in the order successors()
+     * gives them, until the action asks to stop.
+     *
+     * @param action told about each successor; returns false to stop
+     * @return false if the action stopped early, true if every successor
+     *         was handed over
+     */
+    public default boolean forEachSuccessor(Predicate< ? super Configuration > action) {
+        for (Iterator< Configuration > children = successors(); children.hasNext(); ) {
+            if (!action.test(children.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Is the current configuration valid or not?
      *
@@ -31,9 +64,56 @@ public interface Configuration {
      */
     public boolean isGoal();
 
+    /**
+     * A quick test, run by the solitarechess.backtracking.Backtracker before
+     * it searches a configuration's successors, that no goal can be reached
+     * from it. It may miss dead ends, but it must never be true of a
+     * configuration that has a solution.
+     *
+     * @return true if the configuration is known to have no solution
+     */
+    public default boolean isDeadEnd() {
+        return false;
+    }
+
     /**
      * Get Board
      * @return
      */
     public String[][] getBoard();
-}
\ No newline at end of file
+
+    /**
+     * Get a 64 bit hash of this configuration's position, used by the
+     * solitarechess.backtracking.Backtracker to remember dead positions.
+     * Equal positions must have equal hashes. Configurations that return 0
+     * are never remembered.
+     *
+     * @return the position hash, or 0 if there is none
+     */
+    public default long getHash() {
+        return 0;
+    }
+
+    /**
+     * Get a 64 bit hash that is the same for this position and every
+     * position equivalent to it under the puzzle's symmetries, used by the
+     * solitarechess.backtracking.Backtracker's memos. Equivalent positions
+     * are solved the same way once turned back, so one entry covers them
+     * all. Configurations that know of no symmetries use getHash().
+     *
+     * @return the canonical position hash, or 0 if there is none
+     */
+    public default long getCanonicalHash() {
+        return getHash();
+    }
+
+    /**
+     * Get the move that made this configuration from its parent, as a code
+     * from 0 to 65535 that the solitarechess.backtracking.MoveList can hold.
+     *
+     * @return the move code, or -1 if there is no parent
+     */
+    public default int getMove() {
+        return -1;
+    }
+}
@@ -0,0 +1,640 @@
+package soltrchess.backtracking;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Works out how hard puzzles are from their whole game tree, instead of by
+ * hand, and labels them with a tier. Each board's tree is walked once, with
+ * every position remembered so a position reached by several capture
+ * orders is only looked at once, and the metrics are added up on the way
+ * back:
+ * <ul>
+ * <li>solutions: the capture sequences that win</li>
+ * <li>tree size: the positions a search with no memo would visit to try
+ *     every line</li>
+ * <li>branching: the effective branching factor b, where a tree of that
+ *     size and depth would have b children at every position</li>
+ * <li>trap depth: the most captures that can be made after a mistake,
+ *     anywhere on a winning line, before the player is stuck</li>
+ * <li>losing first moves: the fraction of first captures that cannot
+ *     win</li>
+ * </ul>
+ * The score is log2(tree size / solutions), the bits of guessing a
+ * solution takes, plus the trap depth, and a board's tier is the last one
+ * whose threshold the score reaches. Puzzle files, directories of them
+ * and packed corpora are graded on a pool of worker threads; a line of
+ * NDJSON is written for each, and with -write the labels that name a
+ * tier, or PuzzleGenerator's placeholder, are rewritten, keeping a leading
+ * "N. " number; other labels, such as "already won", are left alone.
+ * Boards with too many positions to grade are reported as Incomplete and
+ * keep their labels.
+ */
+public class DifficultyGrader {
+    /** tier of a board with no solution */
+    public static final String UNSOLVABLE = "Unsolvable";
+    /** tier of a board with too many positions to grade */
+    public static final String INCOMPLETE = "Incomplete";
+    /** the tiers of data/, by the score each starts at */
+    public static final Map<String, Double> DEFAULT_TIERS = defaultTiers();
+    /** slots in a new position table */
+    private static final int INITIAL_SLOTS = 1 << 12;
+    /** a table bigger than this, about 2 MB, is given back after its board */
+    private static final int KEPT_SLOTS = 1 << 16;
+    /**
+     * heap a position takes at most: two 30 byte slots, as the table is at
+     * most half full, and the old table's share while it grows
+     */
+    private static final int BYTES_PER_POSITION = 96;
+    /** the largest default position cap, about 400 MB a thread */
+    private static final int MAX_DEFAULT_POSITIONS = 1 << 22;
+    /** the number a label starts with, e.g. "23. " */
+    private static final Pattern NUMBER = Pattern.compile("^(\\d+)\\.\\s");
+
+    /** tier names and the scores they start at, in increasing order */
+    private final Map<String, Double> tiers;
+    /** the most distinct positions a board may have before grading gives up */
+    private final int maxPositions;
+    /** each worker's position table, reused from board to board unless a big board grew it */
+    private final ThreadLocal<Walker> walkers = ThreadLocal.withInitial(Walker::new);
+
+    /**
+     * The metrics and tier of one board.
+     */
+    public static class Grade {
+        /** winning capture sequences, Long.MAX_VALUE if more */
+        public final long solutions;
+        /** positions in the full game tree, Long.MAX_VALUE if more */
+        public final long treeSize;
+        /** distinct positions in the game tree */
+        public final int positions;
+        /** effective branching factor */
+        public final double branching;
+        /** most captures that can follow a mistake before being stuck */
+        public final int trapDepth;
+        /** number of first captures */
+        public final int firstMoves;
+        /** number of first captures that cannot win */
+        public final int losingFirstMoves;
+        /** log2(tree size / solutions) + trap depth */
+        public final double score;
+        /** the tier the score falls in */
+        public final String tier;
+        /** false if the board had too many positions to grade */
+        public final boolean complete;
+
+        Grade(long solutions, long treeSize, int positions, double branching, int trapDepth,
+              int firstMoves, int losingFirstMoves, double score, String tier, boolean complete) {
+            this.solutions = solutions;
+            this.treeSize = treeSize;
+            this.positions = positions;
+            this.branching = branching;
+            this.trapDepth = trapDepth;
+            this.firstMoves = firstMoves;
+            this.losingFirstMoves = losingFirstMoves;
+            this.score = score;
+            this.tier = tier;
+            this.complete = complete;
+        }
+
+        /**
+         * @return the fraction of first captures that cannot win, 0 if none
+         */
+        public double losingFraction() {
+            return firstMoves == 0 ? 0 : (double) losingFirstMoves / firstMoves;
+        }
+
+        /**
+         * This grade as the fields of a JSON object, without the braces.
+         *
+         * @return the JSON fields
+         */
+        public String toJsonFields() {
+            return String.format("\"tier\":\"%s\",\"score\":%s,\"solutions\":%d,\"treeSize\":%d,"
+                            + "\"positions\":%d,\"branching\":%s,\"trapDepth\":%d,\"losingFirstMoves\":%.3f,"
+                            + "\"complete\":%b",
+                    tier, number(score, 2), solutions, treeSize, positions, number(branching, 3), trapDepth,
+                    losingFraction(), complete);
+        }
+
+        /** a double in JSON, which has no infinity or NaN */
+        private static String number(double value, int decimals) {
+            return Double.isFinite(value) ? String.format("%." + decimals + "f", value) : "null";
+        }
+    }
+
+    /**
+     * Create a grader.
+     *
+     * @param tiers tier names and the scores they start at, in increasing
+     *              order of score
+     * @param maxPositions the most distinct positions a board may have;
+     *                     bigger boards are graded INCOMPLETE
+     */
+    public DifficultyGrader(Map<String, Double> tiers, int maxPositions) {
+        if (tiers.isEmpty()) {
+            throw new IllegalArgumentException("no tiers");
+        }
+        double last = Double.NEGATIVE_INFINITY;
+        for (double threshold : tiers.values()) {
+            if (threshold < last) {
+                throw new IllegalArgumentException("tier thresholds must increase: " + tiers);
+            }
+            last = threshold;
+        }
+        this.tiers = new LinkedHashMap<>(tiers);
+        this.maxPositions = maxPositions;
+    }
+
+    private static Map<String, Double> defaultTiers() {
+        Map<String, Double> tiers = new LinkedHashMap<>();
+        tiers.put("Easy", 0.0);
+        tiers.put("Intermediate", 6.0);
+        tiers.put("Advanced", 10.0);
+        tiers.put("Expert", 12.0);
+        return Collections.unmodifiableMap(tiers);
+    }
+
+    /**
+     * Grade one board on the calling thread.
+     *
+     * @param board the board
+     * @return its metrics and tier
+     */
+    public Grade grade(SoltrChessConfig board) {
+        return walkers.get().grade(board);
+    }
+
+    /**
+     * The tier a score falls in.
+     *
+     * @param score a Grade's score
+     * @return the last tier whose threshold the score reaches, or the first
+     */
+    public String tierOf(double score) {
+        String tier = null;
+        for (Map.Entry<String, Double> entry : tiers.entrySet()) {
+            if (tier == null || score >= entry.getValue()) {
+                tier = entry.getKey();
+            }
+        }
+        return tier;
+    }
+
+    /**
+     * Walks a board's game tree, remembering each position's metrics in an
+     * open-addressed table that is reused for every board: entries from
+     * earlier boards are told apart by the board number they were stored
+     * under, so nothing is cleared between boards.
+     */
+    private class Walker {
+        /** Zobrist hash of the position in each slot */
+        private long[] keys;
+        /** board number each slot was stored under; older slots are empty */
+        private int[] stamps;
+        private long[] solutions;
+        private long[] sizes;
+        private byte[] heights;
+        private byte[] traps;
+        /** number of the board being graded */
+        private int stamp;
+        /** slots filled for this board */
+        private int filled;
+        /** capture targets at each depth, indexed by depth then from square */
+        private long[][] targets = new long[0][];
+        /** the last visit()'s results */
+        private long lastSolutions;
+        private long lastSize;
+        private int lastHeight;
+        private int lastTrap;
+
+        Walker() {
+            allocate(INITIAL_SLOTS);
+        }
+
+        Grade grade(SoltrChessConfig start) {
+            if (keys.length > KEPT_SLOTS) {
+                // the last board was a big one; don't hold its table for the rest of the run
+                allocate(INITIAL_SLOTS);
+            }
+            if (++stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            filled = 0;
+            if (targets.length < start.numPieces + 1 || targets[0].length < start.attacks.squares) {
+                targets = new long[start.numPieces + 1][start.attacks.squares];
+            }
+            SoltrChessConfig board = new SoltrChessConfig(start, -1, -1, "-");
+            int firstMoves = 0;
+            int losing = 0;
+            try {
+                visit(board, 0);
+                // the root's children again, now all remembered, for the first-move counts
+                long occupied = board.occupied;
+                for (long froms = occupied; froms != 0; froms &= froms - 1) {
+                    int from = Long.numberOfTrailingZeros(froms);
+                    for (long tos = board.attacks.attacks[board.get(from)][from] & occupied; tos != 0; tos &= tos - 1) {
+                        int to = Long.numberOfTrailingZeros(tos);
+                        int victim = board.makeMove(from, to);
+                        visit(board, 1);
+                        board.unmakeMove(from, to, victim);
+                        firstMoves++;
+                        if (lastSolutions == 0) {
+                            losing++;
+                        }
+                    }
+                }
+                visit(board, 0);
+            } catch (TooManyPositions e) {
+                return new Grade(0, Long.MAX_VALUE, filled, Double.NaN, 0, 0, 0, Double.NaN,
+                        INCOMPLETE, false);
+            }
+            double branching = branching(lastSize, lastHeight);
+            if (lastSolutions == 0) {
+                return new Grade(0, lastSize, filled, branching, lastHeight, firstMoves, losing,
+                        Double.POSITIVE_INFINITY, UNSOLVABLE, true);
+            }
+            double score = Math.log((double) lastSize / lastSolutions) / Math.log(2) + lastTrap;
+            return new Grade(lastSolutions, lastSize, filled, branching, lastTrap, firstMoves, losing,
+                    score, tierOf(score), true);
+        }
+
+        /**
+         * Work out a position's metrics, from the table if it is there.
+         * The results are left in the last* fields.
+         */
+        private void visit(SoltrChessConfig board, int depth) {
+            long key = board.hash;
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (stamps[slot] == stamp) {
+                if (keys[slot] == key) {
+                    lastSolutions = solutions[slot];
+                    lastSize = sizes[slot];
+                    lastHeight = heights[slot];
+                    lastTrap = traps[slot];
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            long wins = board.numPieces <= 1 ? 1 : 0;
+            long size = 1;
+            int height = 0;
+            int trap = 0;
+            long occupied = board.occupied;
+            long[] moves = targets[depth];
+            for (long froms = occupied; froms != 0; froms &= froms - 1) {
+                int from = Long.numberOfTrailingZeros(froms);
+                moves[from] = board.attacks.attacks[board.get(from)][from] & occupied;
+            }
+            for (long froms = occupied; froms != 0; froms &= froms - 1) {
+                int from = Long.numberOfTrailingZeros(froms);
+                for (long tos = moves[from]; tos != 0; tos &= tos - 1) {
+                    int to = Long.numberOfTrailingZeros(tos);
+                    int victim = board.makeMove(from, to);
+                    visit(board, depth + 1);
+                    board.unmakeMove(from, to, victim);
+                    wins = saturatedAdd(wins, lastSolutions);
+                    size = saturatedAdd(size, lastSize);
+                    height = Math.max(height, lastHeight + 1);
+                    trap = Math.max(trap, lastSolutions == 0 ? lastHeight + 1 : lastTrap);
+                }
+            }
+            store(key, wins, size, height, trap);
+            lastSolutions = wins;
+            lastSize = size;
+            lastHeight = height;
+            lastTrap = trap;
+        }
+
+        private void store(long key, long wins, long size, int height, int trap) {
+            if (filled >= maxPositions) {
+                throw TooManyPositions.INSTANCE;
+            }
+            if (2 * (filled + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (stamps[slot] == stamp) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            stamps[slot] = stamp;
+            solutions[slot] = wins;
+            sizes[slot] = size;
+            heights[slot] = (byte) height;
+            traps[slot] = (byte) trap;
+            filled++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldStamps = stamps;
+            long[] oldSolutions = solutions;
+            long[] oldSizes = sizes;
+            byte[] oldHeights = heights;
+            byte[] oldTraps = traps;
+            allocate(oldKeys.length * 2);
+            filled = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldStamps[i] == stamp) {
+                    store(oldKeys[i], oldSolutions[i], oldSizes[i], oldHeights[i], oldTraps[i]);
+                }
+            }
+        }
+
+        /** Replace the table with an empty one. */
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            stamps = new int[capacity];
+            solutions = new long[capacity];
+            sizes = new long[capacity];
+            heights = new byte[capacity];
+            traps = new byte[capacity];
+        }
+    }
+
+    /** thrown out of a walk when a board has too many positions; never serialized */
+    @SuppressWarnings("serial")
+    private static final class TooManyPositions extends RuntimeException {
+        static final TooManyPositions INSTANCE = new TooManyPositions();
+
+        private TooManyPositions() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * The effective branching factor: the b for which a tree with b
+     * children at every position down to the given depth has the given
+     * number of positions, found by bisection.
+     */
+    static double branching(long size, int depth) {
+        if (depth == 0 || size <= 1) {
+            return 0;
+        }
+        double low = 0;
+        double high = size;
+        for (int i = 0; i < 100; i++) {
+            double b = (low + high) / 2;
+            double total = 1;
+            double level = 1;
+            for (int d = 0; d < depth && total <= size; d++) {
+                level *= b;
+                total += level;
+            }
+            if (total > size) {
+                high = b;
+            } else {
+                low = b;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Replace the tier in a label, keeping its leading number. Only a label
+     * that is a tier name, UNSOLVABLE or PuzzleGenerator's placeholder,
+     * after the number and in any case, is replaced.
+     *
+     * @param label the old label, null if none
+     * @param tier the new tier
+     * @return the new label, or the old one if it names no tier
+     */
+    String relabel(String label, String tier) {
+        if (label == null) {
+            return null;
+        }
+        Matcher number = NUMBER.matcher(label);
+        boolean numbered = number.find();
+        String name = (numbered ? label.substring(number.end()) : label).trim();
+        if (!isTier(name)) {
+            return label;
+        }
+        return numbered ? number.group(1) + ". " + tier : tier;
+    }
+
+    /** @return true if a label names a tier a grade may replace */
+    private boolean isTier(String name) {
+        if (name.equalsIgnoreCase(UNSOLVABLE) || name.equalsIgnoreCase(PuzzleGenerator.UNGRADED)) {
+            return true;
+        }
+        for (String tier : tiers.keySet()) {
+            if (name.equalsIgnoreCase(tier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A position cap that lets every worker hold its biggest table at once
+     * in half of the heap.
+     *
+     * @param threads number of worker threads
+     * @return the cap, at most MAX_DEFAULT_POSITIONS
+     */
+    public static int defaultMaxPositions(int threads) {
+        long perThread = Runtime.getRuntime().maxMemory() / 2 / threads / BYTES_PER_POSITION;
+        return (int) Math.max(INITIAL_SLOTS, Math.min(MAX_DEFAULT_POSITIONS, perThread));
+    }
+
+    /**
+     * Grade every puzzle of a list on a pool of workers.
+     *
+     * @param boards the puzzles
+     * @param threads number of worker threads
+     * @return the grades, in the order of the list
+     * @throws IOException if a worker fails or the wait is interrupted
+     */
+    public Grade[] gradeAll(List<SoltrChessConfig> boards, int threads) throws IOException {
+        Grade[] grades = new Grade[boards.size()];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                for (int i = next.getAndIncrement(); i < grades.length; i = next.getAndIncrement()) {
+                    grades[i] = grade(boards.get(i));
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return grades;
+    }
+
+    /**
+     * Parse tiers written as name=score,name=score,...
+     *
+     * @param spec the tiers, in increasing order of score
+     * @return tier names and the scores they start at
+     */
+    static Map<String, Double> parseTiers(String spec) {
+        Map<String, Double> tiers = new LinkedHashMap<>();
+        for (String tier : spec.split(",")) {
+            String[] parts = tier.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Tier should be name=score, not " + tier);
+            }
+            tiers.put(parts[0].trim(), Double.parseDouble(parts[1]));
+        }
+        return tiers;
+    }
+
+    /**
+     * Grade the puzzle files and corpora on the command line.
+     *
+     * @param args [-threads n] [-tiers name=score,...] [-max-positions n]
+     *             [-write] [-o output.ndjson] file-directory-or-corpus...;
+     *             the position cap defaults to defaultMaxPositions()
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Map<String, Double> tiers = DEFAULT_TIERS;
+        int maxPositions = 0;
+        boolean write = false;
+        String output = null;
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-tiers" -> tiers = parseTiers(args[++i]);
+                case "-max-positions" -> maxPositions = Integer.parseInt(args[++i]);
+                case "-write" -> write = true;
+                case "-o" -> output = args[++i];
+                default -> paths.add(args[i]);
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: java DifficultyGrader [-threads n] [-tiers Easy=0,Hard=5,...] "
+                    + "[-max-positions n] [-write] [-o output.ndjson] file-directory-or-corpus...");
+            return;
+        }
+        if (maxPositions == 0) {
+            maxPositions = defaultMaxPositions(threads);
+        }
+        DifficultyGrader grader = new DifficultyGrader(tiers, maxPositions);
+        long start = System.nanoTime();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int graded = 0;
+        try (Writer out = output == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(output))) {
+            List<String> textFiles = new ArrayList<>();
+            for (String name : paths) {
+                if (name.endsWith(".scc")) {
+                    graded += grader.gradeCorpus(Paths.get(name), threads, write, out, counts);
+                } else {
+                    textFiles.add(name);
+                }
+            }
+            if (!textFiles.isEmpty()) {
+                graded += grader.gradeFiles(BatchSolver.puzzleFiles(textFiles), threads, write, out, counts);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d puzzles graded in %.3f seconds: %.1f puzzles/s, %d threads, %s%n",
+                graded, seconds, graded / seconds, threads, counts);
+    }
+
+    /**
+     * Grade puzzle files, rewriting their labels if asked.
+     *
+     * @return the number graded
+     */
+    private int gradeFiles(List<Path> files, int threads, boolean write, Writer out, Map<String, Integer> counts)
+            throws IOException {
+        List<SoltrChessConfig> boards = new ArrayList<>(files.size());
+        List<String> labels = new ArrayList<>(files.size());
+        for (Path file : files) {
+            PuzzleFile puzzle = PuzzleFile.read(file);
+            boards.add(puzzle.toConfig());
+            labels.add(puzzle.getLabel());
+        }
+        Grade[] grades = gradeAll(boards, threads);
+        for (int i = 0; i < grades.length; i++) {
+            String label = grades[i].complete ? relabel(labels.get(i), grades[i].tier) : labels.get(i);
+            out.write("{\"file\":\"" + files.get(i).toString().replace("\\", "\\\\").replace("\"", "\\\"")
+                    + "\"," + grades[i].toJsonFields() + "}\n");
+            counts.merge(grades[i].tier, 1, Integer::sum);
+            if (write && !Objects.equals(label, labels.get(i))) {
+                Files.writeString(files.get(i), PuzzleFile.format(boards.get(i), label));
+            }
+        }
+        return grades.length;
+    }
+
+    /**
+     * Grade a packed corpus, writing a relabelled copy over it if asked.
+     *
+     * @return the number graded
+     */
+    private int gradeCorpus(Path corpus, int threads, boolean write, Writer out, Map<String, Integer> counts)
+            throws IOException {
+        List<SoltrChessConfig> boards = new ArrayList<>();
+        PuzzleCorpus.Cursor cursor = PuzzleCorpus.open(corpus).cursor();
+        while (cursor.next()) {
+            boards.add(cursor.toConfig());
+        }
+        Grade[] grades = gradeAll(boards, threads);
+        for (int i = 0; i < grades.length; i++) {
+            out.write("{\"corpus\":\"" + corpus.toString().replace("\\", "\\\\").replace("\"", "\\\"")
+                    + "\",\"index\":" + i + "," + grades[i].toJsonFields() + "}\n");
+            counts.merge(grades[i].tier, 1, Integer::sum);
+        }
+        if (write) {
+            Path relabelled = corpus.resolveSibling(corpus.getFileName() + ".graded");
+            cursor = PuzzleCorpus.open(corpus).cursor();
+            try (PuzzleCorpus.Writer writer = PuzzleCorpus.create(relabelled)) {
+                while (cursor.next()) {
+                    int i = (int) cursor.getIndex();
+                    String label = grades[i].complete ? relabel(cursor.getLabel(), grades[i].tier) : cursor.getLabel();
+                    writer.add(boards.get(i), label, cursor.getSolution());
+                }
+            }
+            Files.move(relabelled, corpus, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return grades.length;
+    }
+}
@@ -0,0 +1,341 @@
+package soltrchess.backtracking;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A backtracker for Solitaire Chess that does not allocate while it
+ * searches. Instead of recursing over configuration objects it keeps one
+ * mutable board, makes each capture on it and takes the capture back when
+ * the subtree is done, and keeps its place in an explicit stack of frames.
+ * Every frame's buffer of moves is allocated once, sized for the largest
+ * board solved so far, and reused by every later search; the only objects
+ * made per solve are the scratch board and the MoveList returned.
+ * <p>
+ * It visits the same configurations in the same order as Backtracker, with
+ * the same dead-end pruning and memo of dead positions, so the two can be
+ * swapped freely and share memos.
+ */
+public class IterativeBacktracker {
+    /** positions proven to have no solution, null if not remembering */
+    private final TranspositionTable memo;
+    /** configurations visited so far */
+    private long nodes;
+    /** configurations cut off by the dead-end test so far */
+    private long pruned;
+    /** configurations whose moves were generated so far */
+    private long expanded;
+    /** moves generated so far */
+    private long generated;
+    /** memo lookups so far */
+    private long memoProbes;
+    /** memo lookups that found a dead position so far */
+    private long memoHits;
+    /** which captures to try first; null for the order they are generated */
+    private CaptureOrdering ordering;
+    /** is the dead-end test run before searching a configuration? */
+    private boolean pruning = true;
+    /** told about every step of the search, null if nobody is watching */
+    private SolverListener listener;
+    /** checked every SearchMonitor.CHECK_INTERVAL nodes, may stop the search */
+    private SearchMonitor monitor = SearchMonitor.NONE;
+
+    /** moves[d] holds the moves of the board at depth d, count[d] of them */
+    private int[][] moves = new int[0][];
+    /** number of moves at each depth */
+    private int[] count = new int[0];
+    /** the next move to try at each depth */
+    private int[] next = new int[0];
+    /** the piece captured by the move being tried at each depth */
+    private int[] victim = new int[0];
+    /** the canonical hash of the board at each depth, 0 if not remembered */
+    private long[] hash = new long[0];
+    /** node count when each depth's board was entered */
+    private long[] start = new long[0];
+    /** scratch space for the dead-end test */
+    private long[] reach = new long[0];
+    /** scratch space for the dead-end test */
+    private long[] hits = new long[0];
+
+    /**
+     * Create a backtracker that does not remember dead positions.
+     */
+    public IterativeBacktracker() {
+        this(null);
+    }
+
+    /**
+     * Create a backtracker that skips positions it has already proven to
+     * have no solution.
+     *
+     * @param memo table of dead positions, may be shared between solves
+     *             and with a Backtracker; null to turn memoization off
+     */
+    public IterativeBacktracker(TranspositionTable memo) {
+        this.memo = memo;
+    }
+
+    /**
+     * Find a solution, if one exists, and the moves that reach it.
+     *
+     * @param config the starting board; it is not changed
+     * @return the moves to a goal, or null if there is none
+     * @throws CancellationException if the monitor stopped the search;
+     *         the memo keeps only what was proven before it stopped
+     */
+    public MoveList solveWithPath(SoltrChessConfig config) {
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        long startNodes = nodes;
+        long startPruned = pruned;
+        long startExpanded = expanded;
+        long startGenerated = generated;
+        long startProbes = memoProbes;
+        long startHits = memoHits;
+        int[] maxDepth = new int[1];
+        MoveList solution;
+        try {
+            solution = search(config, maxDepth);
+        } catch (CancellationException e) {
+            if (listener != null) {
+                listener.searchFinished(false);
+            }
+            throw e;
+        }
+        event.end();
+        if (listener != null) {
+            listener.searchFinished(solution != null);
+        }
+        if (event.shouldCommit()) {
+            event.search = "iterative";
+            event.startHash = config.getHash();
+            event.solved = solution != null;
+            event.nodes = nodes - startNodes;
+            event.pruned = pruned - startPruned;
+            event.expanded = expanded - startExpanded;
+            event.generated = generated - startGenerated;
+            event.memoProbes = memoProbes - startProbes;
+            event.memoHits = memoHits - startHits;
+            event.maxDepth = maxDepth[0];
+            event.commit();
+        }
+        return solution;
+    }
+
+    /**
+     * The search loop. Frame d describes the board after d moves: its
+     * moves, which one is being tried, and what that move captured. Going
+     * down a level makes a move on the board; coming back up unmakes it.
+     *
+     * @param config the starting board
+     * @param maxDepth set to the deepest depth visited
+     * @return the moves to a goal, or null if there is none
+     */
+    private MoveList search(SoltrChessConfig config, int[] maxDepth) {
+        SoltrChessConfig board = new SoltrChessConfig(config, -1, -1, "-");
+        reserve(board);
+        if (!enter(board, 0)) {
+            return board.isGoal() ? MoveList.EMPTY : null;
+        }
+        int depth = 0;
+        long startNodes = nodes;
+        long checkAt = nodes + SearchMonitor.CHECK_INTERVAL;
+        while (true) {
+            if (nodes >= checkAt) {
+                checkAt = nodes + SearchMonitor.CHECK_INTERVAL;
+                if (!monitor.checkpoint(nodes - startNodes, depth)) {
+                    throw new CancellationException("search stopped after " + (nodes - startNodes) + " nodes");
+                }
+            }
+            if (next[depth] == count[depth]) {
+                // every move from here failed
+                if (hash[depth] != 0) {
+                    memo.markDead(hash[depth], nodes - start[depth]);
+                }
+                if (depth == 0) {
+                    return null;
+                }
+                depth--;
+                int move = moves[depth][next[depth] - 1];
+                board.unmakeMove(MoveList.fromOf(move), MoveList.toOf(move), victim[depth]);
+                continue;
+            }
+            int move = moves[depth][next[depth]++];
+            int from = MoveList.fromOf(move);
+            int to = MoveList.toOf(move);
+            victim[depth] = board.makeMove(from, to);
+            if (depth + 1 > maxDepth[0]) {
+                maxDepth[0] = depth + 1;
+            }
+            if (enter(board, depth + 1)) {
+                depth++;
+            } else if (board.isGoal()) {
+                return path(depth + 1);
+            } else {
+                board.unmakeMove(from, to, victim[depth]);
+            }
+        }
+    }
+
+    /**
+     * Visit the board at a depth: count it, and unless it is a goal, a
+     * dead end or known to be dead, fill in its frame so the search can go
+     * into it.
+     *
+     * @return true if the search should go into the board
+     */
+    private boolean enter(SoltrChessConfig board, int depth) {
+        nodes++;
+        boolean goal = board.isGoal();
+        if (listener != null) {
+            listener.goalChecked(depth, goal);
+        }
+        if (goal) {
+            return false;
+        }
+        if (pruning && board.isDeadEnd(reach, hits)) {
+            pruned++;
+            if (listener != null) {
+                listener.pruned(depth);
+            }
+            return false;
+        }
+        long key = memo == null ? 0 : board.getCanonicalHash();
+        if (key != 0) {
+            boolean dead = memo.isDead(key);
+            memoProbes++;
+            if (listener != null) {
+                listener.memoProbed(depth, dead);
+            }
+            if (dead) {
+                memoHits++;
+                return false;
+            }
+        }
+        hash[depth] = key;
+        start[depth] = nodes;
+        count[depth] = generate(board, moves[depth]);
+        next[depth] = 0;
+        if (ordering != null) {
+            ordering.sort(board, moves[depth], count[depth]);
+        }
+        expanded++;
+        generated += count[depth];
+        if (listener != null) {
+            listener.successorsGenerated(depth, count[depth]);
+        }
+        return true;
+    }
+
+    /**
+     * Write a board's captures into a buffer, in the same order as
+     * SoltrChessConfig.getSuccessors().
+     *
+     * @return the number of captures
+     */
+    private static int generate(SoltrChessConfig board, int[] buffer) {
+        int n = 0;
+        for (long pieceSquares = board.occupied; pieceSquares != 0; pieceSquares &= pieceSquares - 1) {
+            int from = Long.numberOfTrailingZeros(pieceSquares);
+            for (long captures = board.targets(from); captures != 0; captures &= captures - 1) {
+                buffer[n++] = MoveList.pack(from, Long.numberOfTrailingZeros(captures));
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the moves being tried at depths 0 to length - 1
+     */
+    private MoveList path(int length) {
+        MoveList path = new MoveList(length);
+        for (int d = 0; d < length; d++) {
+            path.set(d, moves[d][next[d] - 1]);
+        }
+        return path;
+    }
+
+    /**
+     * Make sure the frames are big enough for a board: one frame per
+     * capture, each with room for every move one board could have.
+     */
+    private void reserve(SoltrChessConfig board) {
+        int pieces = Math.max(1, board.numPieces);
+        int movesPerFrame = pieces * (pieces - 1);
+        if (moves.length < pieces || (moves.length > 0 && moves[0].length < movesPerFrame)) {
+            int frames = Math.max(pieces, moves.length);
+            int width = Math.max(movesPerFrame, moves.length > 0 ? moves[0].length : 0);
+            moves = new int[frames][width];
+            count = new int[frames];
+            next = new int[frames];
+            victim = new int[frames];
+            hash = new long[frames];
+            start = new long[frames];
+            reach = new long[pieces];
+            hits = new long[pieces];
+        }
+    }
+
+    /**
+     * Choose which captures to try first.
+     *
+     * @param ordering the ordering, or null for the order they are
+     *                 generated in
+     */
+    public void setOrdering(CaptureOrdering ordering) {
+        this.ordering = ordering;
+    }
+
+    /**
+     * Watch the search as it goes, with the chance to stop it.
+     *
+     * @param monitor the monitor, SearchMonitor.NONE to never stop
+     */
+    public void setMonitor(SearchMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Turn the dead-end test on or off. It is on by default.
+     *
+     * @param pruning true to skip boards that are known dead ends
+     */
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Watch the search. With no listener the search pays only a null check.
+     *
+     * @param listener the listener, or null for none
+     */
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the number of configurations visited by this backtracker.
+     *
+     * @return node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the number of configurations the dead-end test has cut off.
+     *
+     * @return pruned configuration count
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    /**
+     * Get the memo of dead positions.
+     *
+     * @return the table, or null if memoization is off
+     */
+    public TranspositionTable getMemo() {
+        return memo;
+    }
+}
@@ -0,0 +1,161 @@
+package soltrchess.backtracking;
+
+/**
+ * A solution as the sequence of moves that reaches the goal, two bytes per
+ * move. Each move holds the square the piece moved from in its high six
+ * bits and the square it captured on in its low six bits, squares being
+ * numbered row * cols + col, which covers boards up to 8x8. The list is
+ * filled in by the backtracker as the recursion unwinds, so no board is kept
+ * for any step.
+ */
+public class MoveList {
+    /** a solution with no moves, for a board that is already solved */
+    public static final MoveList EMPTY = new MoveList(0);
+    /** bits used for each square of a move */
+    private static final int SQUARE_BITS = 6;
+    /** mask for one square of a move */
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+
+    /** the packed moves, first move first */
+    private final char[] moves;
+
+    /**
+     * Create a list with room for a number of moves.
+     *
+     * @param size number of moves
+     */
+    MoveList(int size) {
+        this.moves = new char[size];
+    }
+
+    /**
+     * Pack a move into a move code.
+     *
+     * @param from square the piece moves from
+     * @param to square the piece captures on
+     * @return the move code
+     */
+    public static int pack(int from, int to) {
+        return from << SQUARE_BITS | to;
+    }
+
+    /**
+     * Get the square a move code starts on.
+     *
+     * @param move the move code
+     * @return square index, row * cols + col
+     */
+    public static int fromOf(int move) {
+        return move >> SQUARE_BITS;
+    }
+
+    /**
+     * Get the square a move code captures on.
+     *
+     * @param move the move code
+     * @return square index, row * cols + col
+     */
+    public static int toOf(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Record a move.
+     *
+     * @param index position of the move in the list
+     * @param move the move code
+     */
+    void set(int index, int move) {
+        moves[index] = (char) move;
+    }
+
+    /**
+     * Get the number of moves.
+     *
+     * @return the length of the solution
+     */
+    public int size() {
+        return moves.length;
+    }
+
+    /**
+     * Get the square a move starts on.
+     *
+     * @param index which move
+     * @return square index, row * cols + col
+     */
+    public int getFrom(int index) {
+        return fromOf(moves[index]);
+    }
+
+    /**
+     * Get the square a move captures on.
+     *
+     * @param index which move
+     * @return square index, row * cols + col
+     */
+    public int getTo(int index) {
+        return toOf(moves[index]);
+    }
+
+    /**
+     * Copy part of the list.
+     *
+     * @param start index of the first move to copy
+     * @param end index after the last move to copy
+     * @return the moves from start up to end
+     */
+    public MoveList subList(int start, int end) {
+        MoveList part = new MoveList(end - start);
+        System.arraycopy(moves, start, part.moves, 0, end - start);
+        return part;
+    }
+
+    /**
+     * Turn every move of the list by a symmetry, e.g. to bring a solution
+     * of a board's canonical form back to the board as it was given.
+     *
+     * @param symmetry the symmetry, which must fit the board
+     * @param rows the number of rows on the board
+     * @param cols the number of columns on the board
+     * @return the turned moves
+     */
+    public MoveList transform(Symmetry symmetry, int rows, int cols) {
+        MoveList turned = new MoveList(moves.length);
+        for (int i = 0; i < moves.length; i++) {
+            turned.set(i, pack(symmetry.apply(getFrom(i), rows, cols), symmetry.apply(getTo(i), rows, cols)));
+        }
+        return turned;
+    }
+
+    /**
+     * The moves as (row,col) pairs, one per line.
+     *
+     * @param cols the number of columns on the board
+     * @return string representation
+     */
+    public String format(int cols) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < moves.length; i++) {
+            int from = getFrom(i);
+            int to = getTo(i);
+            builder.append(i + 1).append(". (").append(from / cols).append(',').append(from % cols)
+                    .append(") to (").append(to / cols).append(',').append(to % cols).append(")\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The moves as square numbers, e.g. "[9-13, 13-1]".
+     *
+     * @return string representation
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < moves.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(getFrom(i)).append('-').append(getTo(i));
+        }
+        return builder.append(']').toString();
+    }
+}
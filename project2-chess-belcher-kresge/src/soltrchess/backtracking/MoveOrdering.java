@@ -0,0 +1,23 @@
+package soltrchess.backtracking;
+
+import java.util.Collection;
+
+/**
+ * Decides which successors the backtracker tries first. A good ordering
+ * finds a solution sooner; it makes no difference to a position with no
+ * solution, since every successor has to be tried anyway.
+ */
+@FunctionalInterface
+public interface MoveOrdering {
+    /** try the successors in the order the configuration generated them */
+    MoveOrdering GENERATED = (parent, successors) -> successors;
+
+    /**
+     * Put a configuration's successors in the order to try them.
+     *
+     * @param parent the configuration the successors came from
+     * @param successors its successors
+     * @return the same successors, best first
+     */
+    Collection<Configuration> order(Configuration parent, Collection<Configuration> successors);
+}
@@ -0,0 +1,168 @@
+package soltrchess.backtracking;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A backtracker that searches on several threads. The top levels of the
+ * successor tree are split into fork/join tasks, so idle workers steal
+ * subtrees from busy ones when the tree is unbalanced; below the split depth
+ * each task searches its subtree recursively. As soon as any task reaches a
+ * goal every other task stops.
+ */
+public class ParallelBacktracker implements AutoCloseable {
+    /** the worker threads */
+    private final ForkJoinPool pool;
+    /** tree depth above which successors become separate tasks */
+    private final int splitDepth;
+    /** memory cap for each worker's memo of dead positions, 0 for none */
+    private final long memoBytes;
+    /** each worker's memo, dead positions are dead on any thread */
+    private final ThreadLocal<TranspositionTable> memos;
+
+    /**
+     * Create a parallel backtracker with one thread per processor.
+     */
+    public ParallelBacktracker() {
+        this(Runtime.getRuntime().availableProcessors(), 3, 0);
+    }
+
+    /**
+     * Create a parallel backtracker.
+     *
+     * @param threads number of worker threads
+     * @param splitDepth number of tree levels split into separate tasks
+     * @param memoBytes memory cap for each worker's memo of dead
+     *                  positions, 0 to turn memoization off
+     */
+    public ParallelBacktracker(int threads, int splitDepth, long memoBytes) {
+        if (threads < 1 || splitDepth < 0) {
+            throw new IllegalArgumentException("threads must be positive and split depth non-negative");
+        }
+        this.pool = new ForkJoinPool(threads);
+        this.splitDepth = splitDepth;
+        this.memoBytes = memoBytes;
+        this.memos = ThreadLocal.withInitial(() -> new TranspositionTable(memoBytes));
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     */
+    public Optional<Configuration> solve(Configuration config) {
+        AtomicReference<Configuration> found = new AtomicReference<>();
+        pool.invoke(new SolveTask(config, 0, found));
+        return Optional.ofNullable(found.get());
+    }
+
+    /**
+     * Shut down the worker threads.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Search one subtree. Near the root the children are forked as their
+     * own tasks; deeper down they are searched in this task. Tasks are
+     * never serialized.
+     */
+    @SuppressWarnings("serial")
+    private class SolveTask extends RecursiveTask<Configuration> {
+        private final Configuration config;
+        private final int depth;
+        /** the first solution found by any task of this solve */
+        private final AtomicReference<Configuration> found;
+        /** configurations this task's search has visited */
+        private long nodes;
+
+        SolveTask(Configuration config, int depth, AtomicReference<Configuration> found) {
+            this.config = config;
+            this.depth = depth;
+            this.found = found;
+        }
+
+        @Override
+        protected Configuration compute() {
+            if (found.get() != null) {
+                return null;
+            }
+            if (depth >= splitDepth || config.isGoal()) {
+                return search(config, memoBytes > 0 ? memos.get() : null);
+            }
+            List<SolveTask> tasks = new ArrayList<>();
+            config.forEachSuccessor(child -> {
+                // dead ends are not worth a task of their own
+                if (!child.isDeadEnd()) {
+                    tasks.add(new SolveTask(child, depth + 1, found));
+                }
+                return true;
+            });
+            // fork all but the first child, work on the first ourselves
+            for (int i = tasks.size() - 1; i > 0; i--) {
+                tasks.get(i).fork();
+            }
+            Configuration sol = tasks.isEmpty() ? null : tasks.get(0).compute();
+            for (int i = 1; i < tasks.size(); i++) {
+                SolveTask task = tasks.get(i);
+                if (found.get() != null) {
+                    // someone else has the answer, drop the queued siblings
+                    task.cancel(false);
+                } else if (!task.isCancelled()) {
+                    Configuration taskSol = task.join();
+                    if (sol == null) {
+                        sol = taskSol;
+                    }
+                }
+            }
+            return sol;
+        }
+
+        /**
+         * The classic recursive backtracker, giving up as soon as another
+         * task has found a solution.
+         *
+         * @param config the configuration to search from
+         * @param memo this worker's dead positions, null if not remembering
+         * @return a goal configuration, or null if none was found
+         */
+        private Configuration search(Configuration config, TranspositionTable memo) {
+            if (found.get() != null) {
+                return null;
+            }
+            nodes++;
+            if (config.isGoal()) {
+                found.compareAndSet(null, config);
+                return config;
+            }
+            if (config.isDeadEnd()) {
+                return null;
+            }
+            long hash = memo == null ? 0 : config.getCanonicalHash();
+            if (hash != 0 && memo.isDead(hash)) {
+                return null;
+            }
+            long start = nodes;
+            for (Iterator<Configuration> children = config.successors(); children.hasNext(); ) {
+                Configuration sol = search(children.next(), memo);
+                if (sol != null) {
+                    return sol;
+                }
+            }
+            // only a finished search proves the position dead; the size of
+            // its subtree is what the memo keeps the costliest entries by
+            if (hash != 0 && found.get() == null) {
+                memo.markDead(hash, nodes - start);
+            }
+            return null;
+        }
+    }
+}
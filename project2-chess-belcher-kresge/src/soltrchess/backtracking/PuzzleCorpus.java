@@ -0,0 +1,477 @@
+package soltrchess.backtracking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Many puzzles packed into one binary file, to be read back without
+ * parsing text. The file is a 16 byte header (magic number, version,
+ * number of puzzles) followed by one record per puzzle:
+ * <pre>
+ * u16  length of the rest of the record
+ * u8   rows, u8 columns
+ * u8   label length, then the label in UTF-8 (length 0 for no label)
+ * 3 x ceil(rows * cols / 8) bytes: the three bit planes of the piece
+ *      codes, low byte first, so a 4x4 board takes 6 bytes
+ * u8   number of stored solution moves, NO_SOLUTION if none is stored,
+ *      then that many u16 MoveList move codes
+ * </pre>
+ * A 4x4 puzzle with a short label is about 20 bytes, against about 40 for
+ * the text file. The file is memory mapped, and a Cursor walks it reading
+ * straight out of the mapping, so scanning a corpus allocates nothing per
+ * puzzle unless a board or label is asked for. A corpus is limited to 2 GB,
+ * around a hundred million 4x4 puzzles.
+ */
+public class PuzzleCorpus {
+    /** first bytes of a corpus file */
+    private static final int MAGIC = 0x53435031;
+    /** the version of the record layout */
+    private static final int VERSION = 1;
+    /** bytes before the first record */
+    private static final int HEADER = 16;
+    /** solution length stored for a puzzle with no stored solution */
+    public static final int NO_SOLUTION = 0xFF;
+
+    /** the records */
+    private final ByteBuffer records;
+    /** the number of puzzles */
+    private final long size;
+
+    private PuzzleCorpus(ByteBuffer records, long size) {
+        this.records = records;
+        this.size = size;
+    }
+
+    /**
+     * Map a corpus file into memory.
+     *
+     * @param file a file written by a Writer
+     * @return the corpus
+     * @throws IOException if the file cannot be read or is not a corpus
+     */
+    public static PuzzleCorpus open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is over 2 GB; split it into smaller corpora");
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // the mapping stays valid after the channel is closed
+            return wrap(map);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read a corpus that is already in memory, e.g. one sent over the
+     * network.
+     *
+     * @param data the whole corpus file, from its position to its limit
+     * @return the corpus, reading from data without copying it
+     * @throws IllegalArgumentException if data is not a corpus
+     */
+    public static PuzzleCorpus wrap(ByteBuffer data) {
+        ByteBuffer file = data.slice();
+        if (file.limit() < HEADER || file.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not a puzzle corpus");
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("corpus version " + file.getInt(4) + ", not " + VERSION);
+        }
+        return new PuzzleCorpus(file.position(HEADER).slice(), file.getLong(8));
+    }
+
+    /**
+     * Get the number of puzzles.
+     *
+     * @return the puzzle count from the header
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Start reading the puzzles from the first. Cursors are independent, so
+     * several threads can each walk the corpus with their own.
+     *
+     * @return a cursor before the first puzzle
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks a corpus one puzzle at a time. Moving on and reading the
+     * current puzzle's size, pieces and stored moves allocates nothing.
+     */
+    public final class Cursor {
+        /** offset of the next record */
+        private int next;
+        /** index of the current puzzle, -1 before the first */
+        private long index = -1;
+        /** the current puzzle's rows */
+        private int rows;
+        /** the current puzzle's columns */
+        private int cols;
+        /** offset of the current puzzle's label */
+        private int labelAt;
+        /** length of the current puzzle's label in bytes */
+        private int labelLength;
+        /** the current puzzle's piece code bit planes */
+        private long plane0;
+        private long plane1;
+        private long plane2;
+        /** offset of the current puzzle's first stored move */
+        private int solutionAt;
+        /** the number of stored moves, NO_SOLUTION if none are stored */
+        private int solutionLength;
+        /** the capture masks for the last board size seen */
+        private AttackTable attacks;
+
+        private Cursor() {
+        }
+
+        /**
+         * Move to the next puzzle.
+         *
+         * @return false if there are no more
+         * @throws IllegalStateException if the record is damaged, or the
+         *                               corpus ends before the header says
+         */
+        public boolean next() {
+            if (index + 1 >= size) {
+                return false;
+            }
+            // every offset is checked against the record before it is read,
+            // so a truncated or damaged file is reported, not read past
+            int at = next;
+            if (at + 5 > records.limit()) {
+                throw damaged();
+            }
+            int end = at + 2 + records.getChar(at);
+            int recordRows = records.get(at + 2) & 0xFF;
+            int recordCols = records.get(at + 3) & 0xFF;
+            int recordLabelLength = records.get(at + 4) & 0xFF;
+            if (end > records.limit() || recordRows < 1 || recordCols < 1
+                    || recordRows > AttackTable.MAX_DIM || recordCols > AttackTable.MAX_DIM) {
+                throw damaged();
+            }
+            int planeBytes = planeBytes(recordRows, recordCols);
+            int planesAt = at + 5 + recordLabelLength;
+            int countAt = planesAt + 3 * planeBytes;
+            if (countAt >= end) {
+                throw damaged();
+            }
+            int count = records.get(countAt) & 0xFF;
+            if (countAt + 1 + (count == NO_SOLUTION ? 0 : 2 * count) != end) {
+                throw damaged();
+            }
+            long bits0 = readPlane(planesAt, planeBytes);
+            long bits1 = readPlane(planesAt + planeBytes, planeBytes);
+            long bits2 = readPlane(planesAt + 2 * planeBytes, planeBytes);
+            long pieces = bits0 | bits1 | bits2;
+            int squares = recordRows * recordCols;
+            if ((bits0 & bits1 & bits2) != 0 || (squares < Long.SIZE && pieces >>> squares != 0)) {
+                throw damaged();
+            }
+            next = end;
+            rows = recordRows;
+            cols = recordCols;
+            labelLength = recordLabelLength;
+            labelAt = at + 5;
+            plane0 = bits0;
+            plane1 = bits1;
+            plane2 = bits2;
+            solutionLength = count;
+            solutionAt = countAt + 1;
+            index++;
+            return true;
+        }
+
+        /** @return the exception for a record that is cut short or damaged */
+        private IllegalStateException damaged() {
+            return new IllegalStateException("Puzzle " + (index + 1) + " of " + size + " is damaged or cut short");
+        }
+
+        private long readPlane(int at, int bytes) {
+            long plane = 0;
+            for (int i = 0; i < bytes; i++) {
+                plane |= (records.get(at + i) & 0xFFL) << (8 * i);
+            }
+            return plane;
+        }
+
+        /**
+         * @return the index of the current puzzle, counting from 0
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the current puzzle's number of rows
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the current puzzle's number of columns
+         */
+        public int getCols() {
+            return cols;
+        }
+
+        /**
+         * @return the number of pieces on the current puzzle
+         */
+        public int getPieceCount() {
+            return Long.bitCount(plane0 | plane1 | plane2);
+        }
+
+        /**
+         * Get the piece on a square of the current puzzle.
+         *
+         * @param square square index, row * cols + col
+         * @return the piece letter, '-' for an empty square
+         */
+        public char getPiece(int square) {
+            int code = (int) ((plane0 >>> square) & 1 | ((plane1 >>> square) & 1) << 1
+                    | ((plane2 >>> square) & 1) << 2);
+            return SoltrChessConfig.LETTERS.charAt(code);
+        }
+
+        /**
+         * Get the current puzzle's label. This makes a new string.
+         *
+         * @return the label, or null if it has none
+         */
+        public String getLabel() {
+            if (labelLength == 0) {
+                return null;
+            }
+            byte[] bytes = new byte[labelLength];
+            records.get(labelAt, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return true if the current puzzle has a stored solution
+         */
+        public boolean hasSolution() {
+            return solutionLength != NO_SOLUTION;
+        }
+
+        /**
+         * @return the number of moves in the stored solution, NO_SOLUTION
+         *         if none is stored
+         */
+        public int getSolutionLength() {
+            return solutionLength;
+        }
+
+        /**
+         * Get a move of the stored solution.
+         *
+         * @param i the move's position in the solution
+         * @return the MoveList move code
+         */
+        public int getSolutionMove(int i) {
+            return records.getChar(solutionAt + 2 * i);
+        }
+
+        /**
+         * Get the stored solution. This makes a new MoveList.
+         *
+         * @return the moves, or null if no solution is stored
+         */
+        public MoveList getSolution() {
+            if (!hasSolution()) {
+                return null;
+            }
+            MoveList moves = new MoveList(solutionLength);
+            for (int i = 0; i < solutionLength; i++) {
+                moves.set(i, getSolutionMove(i));
+            }
+            return moves;
+        }
+
+        /**
+         * Get the current puzzle as a board for the backtracker. This
+         * makes one new configuration.
+         *
+         * @return the board
+         */
+        public SoltrChessConfig toConfig() {
+            if (attacks == null || attacks.rows != rows || attacks.cols != cols) {
+                attacks = AttackTable.of(rows, cols);
+            }
+            return new SoltrChessConfig(attacks, plane0, plane1, plane2);
+        }
+    }
+
+    /**
+     * Bytes needed for one bit plane of a board.
+     */
+    private static int planeBytes(int rows, int cols) {
+        return (rows * cols + 7) / 8;
+    }
+
+    /**
+     * Create a corpus file.
+     *
+     * @param file where to write it
+     * @return a writer to add the puzzles with
+     * @throws IOException if the file cannot be created
+     */
+    public static Writer create(Path file) throws IOException {
+        return new Writer(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Writes a corpus file, one puzzle at a time. The header's puzzle count
+     * is filled in by close().
+     */
+    public static final class Writer implements Closeable {
+        /** the file */
+        private final FileChannel channel;
+        /** records not yet written */
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        /** puzzles added so far */
+        private long count;
+
+        private Writer(FileChannel channel) throws IOException {
+            this.channel = channel;
+            buffer.position(HEADER);
+        }
+
+        /**
+         * Add a puzzle.
+         *
+         * @param config the board
+         * @param label the label, null for none; at most 255 bytes of UTF-8
+         * @param solution moves that solve the board, null to store none
+         * @throws IOException if writing fails
+         */
+        public void add(SoltrChessConfig config, String label, MoveList solution) throws IOException {
+            byte[] text = label == null ? new byte[0] : label.getBytes(StandardCharsets.UTF_8);
+            if (text.length > 0xFF) {
+                throw new IllegalArgumentException("Label is longer than 255 bytes: " + label);
+            }
+            if (solution != null && solution.size() >= NO_SOLUTION) {
+                throw new IllegalArgumentException("Solution is too long to store");
+            }
+            int planeBytes = planeBytes(config.getRows(), config.getCols());
+            int length = 3 + text.length + 3 * planeBytes + 1 + (solution == null ? 0 : 2 * solution.size());
+            if (buffer.remaining() < 2 + length) {
+                flush();
+            }
+            buffer.putChar((char) length);
+            buffer.put((byte) config.getRows()).put((byte) config.getCols());
+            buffer.put((byte) text.length).put(text);
+            for (long plane : new long[]{config.plane0, config.plane1, config.plane2}) {
+                for (int i = 0; i < planeBytes; i++) {
+                    buffer.put((byte) (plane >>> (8 * i)));
+                }
+            }
+            if (solution == null) {
+                buffer.put((byte) NO_SOLUTION);
+            } else {
+                buffer.put((byte) solution.size());
+                for (int i = 0; i < solution.size(); i++) {
+                    buffer.putChar((char) MoveList.pack(solution.getFrom(i), solution.getTo(i)));
+                }
+            }
+            count++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Write what is left and fill in the header.
+         *
+         * @throws IOException if writing fails
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+                channel.write(header, 0);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Convert puzzle files into a corpus, or look at one.
+     * @param args pack [-solve] corpus file-or-directory... |
+     *             list corpus |
+     *             scan corpus
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("pack")) {
+            boolean solve = args[1].equals("-solve");
+            int first = solve ? 2 : 1;
+            List<Path> files = BatchSolver.puzzleFiles(Arrays.asList(args).subList(first + 1, args.length));
+            IterativeBacktracker backtracker = new IterativeBacktracker(new TranspositionTable(16L << 20));
+            long start = System.nanoTime();
+            try (Writer writer = create(Paths.get(args[first]))) {
+                for (Path file : files) {
+                    PuzzleFile puzzle = PuzzleFile.read(file);
+                    SoltrChessConfig config = puzzle.toConfig();
+                    writer.add(config, puzzle.getLabel(), solve ? backtracker.solveWithPath(config) : null);
+                }
+            }
+            System.err.printf("%d puzzles packed in %.3f seconds%n", files.size(), (System.nanoTime() - start) / 1e9);
+        } else if (args.length == 2 && args[0].equals("list")) {
+            Cursor cursor = open(Paths.get(args[1])).cursor();
+            while (cursor.next()) {
+                SoltrChessConfig config = cursor.toConfig();
+                System.out.print(PuzzleFile.format(config, cursor.getLabel()));
+                if (cursor.hasSolution()) {
+                    System.out.print(cursor.getSolution().format(config.getCols()));
+                }
+                System.out.println();
+            }
+        } else if (args.length == 2 && args[0].equals("scan")) {
+            long start = System.nanoTime();
+            PuzzleCorpus corpus = open(Paths.get(args[1]));
+            Cursor cursor = corpus.cursor();
+            long pieces = 0;
+            long stored = 0;
+            while (cursor.next()) {
+                pieces += cursor.getPieceCount();
+                if (cursor.hasSolution()) {
+                    stored++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d puzzles, %d pieces, %d stored solutions in %.3f seconds: %.0f puzzles/s%n",
+                    corpus.size(), pieces, stored, seconds, corpus.size() / seconds);
+        } else {
+            System.err.println("Usage: java PuzzleCorpus pack [-solve] corpus file-or-directory...");
+            System.err.println("       java PuzzleCorpus list corpus");
+            System.err.println("       java PuzzleCorpus scan corpus");
+        }
+    }
+}
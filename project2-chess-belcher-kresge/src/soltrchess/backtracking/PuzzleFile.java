@@ -0,0 +1,139 @@
+package soltrchess.backtracking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Reads and writes puzzle files. A file is an optional line giving the
+ * number of rows and columns, one line of space separated pieces per row
+ * ("-" for an empty square), and an optional label line such as
+ * "43. Advanced". Files without the size line are 4x4, like the ones in
+ * data/, and 4x4 boards are written without it.
+ * <pre>
+ * 5 5
+ * - R - - N
+ * B - R N -
+ * - P - - -
+ * - B - - Q
+ * - - - K -
+ * 61. Advanced
+ * </pre>
+ */
+public class PuzzleFile {
+    /** rows and columns of a file with no size line */
+    public static final int DEFAULT_DIM = 4;
+
+    /** the pieces, "-" for an empty square */
+    private final String[][] board;
+    /** the label line, null if there is none */
+    private final String label;
+
+    private PuzzleFile(String[][] board, String label) {
+        this.board = board;
+        this.label = label;
+    }
+
+    /**
+     * Read a puzzle file.
+     *
+     * @param file the file
+     * @return the puzzle
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a puzzle
+     */
+    public static PuzzleFile read(Path file) throws IOException {
+        return parse(Files.readAllLines(file));
+    }
+
+    /**
+     * Read a puzzle file.
+     *
+     * @param filename the file's name
+     * @return the puzzle
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a puzzle
+     */
+    public static PuzzleFile read(String filename) throws IOException {
+        return read(Paths.get(filename));
+    }
+
+    /**
+     * Parse the lines of a puzzle file.
+     *
+     * @param lines the lines
+     * @return the puzzle
+     * @throws IllegalArgumentException if the lines are not a puzzle
+     */
+    public static PuzzleFile parse(List<String> lines) {
+        int rows = DEFAULT_DIM;
+        int cols = DEFAULT_DIM;
+        int first = 0;
+        if (!lines.isEmpty() && lines.get(0).trim().matches("\\d+\\s+\\d+")) {
+            String[] size = lines.get(0).trim().split("\\s+");
+            rows = Integer.parseInt(size[0]);
+            cols = Integer.parseInt(size[1]);
+            first = 1;
+        }
+        if (lines.size() < first + rows) {
+            throw new IllegalArgumentException("Expected " + rows + " rows of pieces");
+        }
+        String[][] board = new String[rows][];
+        for (int i = 0; i < rows; i++) {
+            board[i] = lines.get(first + i).trim().split("\\s+");
+            if (board[i].length != cols) {
+                throw new IllegalArgumentException("Row " + i + " should have " + cols + " squares");
+            }
+        }
+        String label = lines.size() > first + rows ? lines.get(first + rows).trim() : null;
+        return new PuzzleFile(board, label);
+    }
+
+    /**
+     * Write a board in the puzzle file format.
+     *
+     * @param config the board
+     * @param label the label line, null for none
+     * @return the file contents
+     */
+    public static String format(SoltrChessConfig config, String label) {
+        StringBuilder text = new StringBuilder();
+        if (config.getRows() != DEFAULT_DIM || config.getCols() != DEFAULT_DIM) {
+            text.append(config.getRows()).append(' ').append(config.getCols()).append('\n');
+        }
+        text.append(config.toString().replace(" \n", "\n"));
+        if (label != null) {
+            text.append(label).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Get the pieces.
+     *
+     * @return a grid of piece letters, "-" for an empty square
+     */
+    public String[][] getBoard() {
+        return board;
+    }
+
+    /**
+     * Get the label line.
+     *
+     * @return the label, or null if the file has none
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Get the board for the backtracker.
+     *
+     * @return the board
+     */
+    public SoltrChessConfig toConfig() {
+        return new SoltrChessConfig(board);
+    }
+}
@@ -0,0 +1,274 @@
+package soltrchess.backtracking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static soltrchess.backtracking.SoltrChessConfig.*;
+
+/**
+ * Makes new puzzles by playing the game backwards. It starts from a board
+ * with one piece and repeatedly "un-captures": a piece steps back to an
+ * empty square from which it could have captured, and a new piece appears
+ * on the square it left. Every board made this way can be solved by playing
+ * the un-captures forwards, so no puzzle has to be checked for a solution,
+ * only graded. Boards are written in the same format as the data/ files.
+ */
+public class PuzzleGenerator {
+    /** un-capture attempts before starting over from a single piece */
+    private static final int MAX_STUCK = 64;
+    /** boards tried for one puzzle before next() gives up */
+    private static final int MAX_ATTEMPTS = 100_000;
+    /** label tier of puzzles not yet graded, which DifficultyGrader replaces */
+    public static final String UNGRADED = "Generated";
+
+    /** the size of the boards and their capture masks */
+    private final AttackTable attacks;
+    /** number of pieces on each generated board */
+    private final int pieceCount;
+    /** most pieces of each kind allowed, indexed by piece code */
+    private final int[] maxOfKind;
+    /** fewest solutions a puzzle may have */
+    private final long minSolutions;
+    /** most solutions a puzzle may have */
+    private final long maxSolutions;
+    /**
+     * canonical forms of the boards already made, so no puzzle comes out
+     * twice, not even as a mirror image of an earlier one
+     */
+    private final Set<SoltrChessConfig> seen = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a generator.
+     *
+     * @param rows rows on each board, up to 8
+     * @param cols columns on each board, up to 8
+     * @param pieceCount pieces on each board, from 2 to the number of squares
+     * @param maxOfKind most pieces of each kind, indexed by piece code
+     *                  (P B R N K Q are 1 to 6); index 0 is ignored
+     * @param minSolutions fewest solutions a puzzle may have
+     * @param maxSolutions most solutions a puzzle may have; fewer solutions
+     *                     makes a harder puzzle, 1 demands a unique one
+     */
+    public PuzzleGenerator(int rows, int cols, int pieceCount, int[] maxOfKind, long minSolutions, long maxSolutions) {
+        this.attacks = AttackTable.of(rows, cols);
+        int allowed = 0;
+        for (int piece = PAWN; piece < LETTERS.length(); piece++) {
+            allowed += maxOfKind[piece];
+        }
+        if (pieceCount < 2 || pieceCount > Math.min(attacks.squares, allowed)) {
+            throw new IllegalArgumentException("cannot place " + pieceCount + " pieces");
+        }
+        if (minSolutions < 1 || maxSolutions < minSolutions) {
+            throw new IllegalArgumentException("bad solution band " + minSolutions + ".." + maxSolutions);
+        }
+        this.pieceCount = pieceCount;
+        this.maxOfKind = maxOfKind.clone();
+        this.minSolutions = minSolutions;
+        this.maxSolutions = maxSolutions;
+    }
+
+    /**
+     * Make one new puzzle, retrying until one lands in the difficulty band
+     * and has not been made before.
+     *
+     * @param random the random numbers to use
+     * @return a solvable board, or null if none was found in MAX_ATTEMPTS
+     *         tries, e.g. because the band cannot be reached or every
+     *         board of this kind has already been made
+     */
+    public SoltrChessConfig next(SplittableRandom random) {
+        Backtracker backtracker = new Backtracker();
+        long limit = maxSolutions == Long.MAX_VALUE ? maxSolutions : maxSolutions + 1;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            SoltrChessConfig board = unplay(random);
+            if (board == null) {
+                continue;
+            }
+            SoltrChessConfig canonical = board.canonical();
+            if (seen.contains(canonical)) {
+                continue;
+            }
+            long solutions = backtracker.countSolutions(board, limit);
+            if (solutions >= minSolutions && solutions <= maxSolutions && seen.add(canonical)) {
+                return board;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Play backwards from a single random piece up to the piece count.
+     *
+     * @param random the random numbers to use
+     * @return the board, or null if play got stuck
+     */
+    private SoltrChessConfig unplay(SplittableRandom random) {
+        int[] counts = new int[LETTERS.length()];
+        int first = randomKind(random, counts);
+        counts[first]++;
+        SoltrChessConfig board = new SoltrChessConfig(attacks, random.nextInt(attacks.squares), first);
+        int stuck = 0;
+        while (board.numPieces < pieceCount) {
+            if (++stuck > MAX_STUCK) {
+                return null;
+            }
+            // pick a piece and a square it could have captured from
+            int to = nthBit(board.occupied, random.nextInt(board.numPieces));
+            int mover = board.get(to);
+            long froms = 0;
+            for (int from = 0; from < attacks.squares; from++) {
+                if ((board.occupied & (1L << from)) == 0 && (attacks.attacks[mover][from] & (1L << to)) != 0) {
+                    froms |= 1L << from;
+                }
+            }
+            int victim = randomKind(random, counts);
+            if (froms == 0 || victim < 0) {
+                continue;
+            }
+            int from = nthBit(froms, random.nextInt(Long.bitCount(froms)));
+            counts[victim]++;
+            board = board.unplay(from, to, victim);
+        }
+        return board;
+    }
+
+    /**
+     * Pick a kind of piece that the piece mix still has room for.
+     *
+     * @return the piece code, or -1 if every kind is used up
+     */
+    private int randomKind(SplittableRandom random, int[] counts) {
+        int room = 0;
+        for (int piece = PAWN; piece < LETTERS.length(); piece++) {
+            room += Math.max(0, maxOfKind[piece] - counts[piece]);
+        }
+        if (room == 0) {
+            return -1;
+        }
+        int pick = random.nextInt(room);
+        for (int piece = PAWN; piece < LETTERS.length(); piece++) {
+            pick -= Math.max(0, maxOfKind[piece] - counts[piece]);
+            if (pick < 0) {
+                return piece;
+            }
+        }
+        return -1;
+    }
+
+    /** @return the square of the n'th set bit of a mask */
+    private static int nthBit(long mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Generate puzzles on several threads until enough have been made.
+     *
+     * @param count number of puzzles to make
+     * @param threads number of worker threads
+     * @param seed random seed, each thread gets its own stream from it
+     * @param dir directory to write the puzzle files to
+     * @param tier difficulty name for the label line, e.g. "Advanced"
+     * @throws IOException if a file cannot be written, or no new puzzle
+     *                     could be found
+     */
+    public void generate(int count, int threads, long seed, Path dir, String tier) throws IOException {
+        Files.createDirectories(dir);
+        AtomicInteger next = new AtomicInteger();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = seeds.split();
+            workers.add(pool.submit(() -> {
+                for (int n = next.incrementAndGet(); n <= count; n = next.incrementAndGet()) {
+                    SoltrChessConfig board = next(random);
+                    if (board == null) {
+                        throw new IllegalStateException("no new puzzle in the solution band after "
+                                + MAX_ATTEMPTS + " tries; " + (n - 1) + " made");
+                    }
+                    Files.writeString(dir.resolve(String.format("gen%06d.txt", n)), PuzzleFile.format(board, n + ". " + tier));
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * The generator program.
+     * @param args count pieces out-dir [-size rows cols] [-mix PBRNKQ-counts]
+     *             [-solutions min max] [-tier name] [-threads n] [-seed n]
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java PuzzleGenerator count pieces out-dir [-size 4 4] [-mix 222211] "
+                    + "[-solutions min max] [-tier name] [-threads n] [-seed n]");
+            return;
+        }
+        int count = Integer.parseInt(args[0]);
+        int pieces = Integer.parseInt(args[1]);
+        Path dir = Paths.get(args[2]);
+        // Solitaire Chess's box: two each of pawns, bishops, rooks and knights, one king and queen
+        String mix = "222211";
+        int rows = PuzzleFile.DEFAULT_DIM;
+        int cols = PuzzleFile.DEFAULT_DIM;
+        long minSolutions = 1;
+        long maxSolutions = Long.MAX_VALUE;
+        String tier = UNGRADED;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        for (int i = 3; i < args.length; i++) {
+            switch (args[i]) {
+                case "-size" -> {
+                    rows = Integer.parseInt(args[++i]);
+                    cols = Integer.parseInt(args[++i]);
+                }
+                case "-mix" -> mix = args[++i];
+                case "-solutions" -> {
+                    minSolutions = Long.parseLong(args[++i]);
+                    maxSolutions = Long.parseLong(args[++i]);
+                }
+                case "-tier" -> tier = args[++i];
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        int[] maxOfKind = new int[LETTERS.length()];
+        for (int piece = PAWN; piece < LETTERS.length(); piece++) {
+            maxOfKind[piece] = mix.charAt(piece - 1) - '0';
+        }
+        PuzzleGenerator generator = new PuzzleGenerator(rows, cols, pieces, maxOfKind, minSolutions, maxSolutions);
+        long start = System.nanoTime();
+        generator.generate(count, threads, seed, dir, tier);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d puzzles in %.3f seconds: %.1f puzzles/s%n", count, seconds, count / seconds);
+    }
+}
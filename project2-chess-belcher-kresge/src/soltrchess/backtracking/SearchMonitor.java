@@ -0,0 +1,26 @@
+package soltrchess.backtracking;
+
+/**
+ * Checked by IterativeBacktracker every few thousand configurations, so a
+ * long search can report how it is going and be stopped part way. It runs
+ * on the searching thread and should be quick: the usual job is to read
+ * the clock and a cancel flag.
+ */
+@FunctionalInterface
+public interface SearchMonitor {
+    /** configurations visited between checks */
+    int CHECK_INTERVAL = 1 << 12;
+
+    /** never stops a search */
+    SearchMonitor NONE = (nodes, depth) -> true;
+
+    /**
+     * The search has visited another CHECK_INTERVAL configurations.
+     *
+     * @param nodes configurations visited by this search so far
+     * @param depth how many moves deep the search is now
+     * @return true to keep searching, false to give up; the search then
+     *         throws a CancellationException
+     */
+    boolean checkpoint(long nodes, int depth);
+}
@@ -4,56 +4,161 @@ import soltrchess.SoltrChess;
 import soltrchess.model.SoltrChessModel;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Predicate;
 
+/**
+ * A Solitaire Chess board for the backtracker, from 1x1 up to 8x8. The
+ * board is packed into primitives instead of a String[][]: a 64 bit mask
+ * records which squares are occupied, and three more 64 bit planes hold the
+ * bits of each square's 3 bit piece code. The piece count and a Zobrist
+ * hash are kept up to date as pieces are captured, so a configuration costs
+ * one small object and no arrays whatever the board size. Squares are
+ * numbered row * cols + col.
+ */
 public class SoltrChessConfig implements Configuration{
-    String[][] board=new String[4][4];
+    /** piece letters indexed by piece code; code 0 is an empty square */
+    static final String LETTERS = "-PBRNKQ";
+    static final int EMPTY = 0;
+    static final int PAWN = 1;
+    static final int BISHOP = 2;
+    static final int ROOK = 3;
+    static final int KNIGHT = 4;
+    static final int KING = 5;
+    static final int QUEEN = 6;
+    /** every symmetry, in the order canonical() tries them */
+    private static final Symmetry[] SYMMETRIES = Symmetry.values();
+
+    /** the board's size and its capture masks */
+    final AttackTable attacks;
+    /** bit s is set if square s holds a piece */
+    long occupied;
+    /** bit s is bit 0 of the piece code on square s */
+    long plane0;
+    /** bit s is bit 1 of the piece code on square s */
+    long plane1;
+    /** bit s is bit 2 of the piece code on square s */
+    long plane2;
     int numPieces=0;
-    int aRow;
-    int aCol;
-    int bRow;
-    int bCol;
+    /** Zobrist hash of the pieces, kept up to date by set() */
+    long hash;
+    /** square the last capture came from, -1 if none */
+    int from = -1;
+    /** square the last capture landed on, -1 if none */
+    int to = -1;
+
+    SoltrChessConfig(String filename) throws IOException {
+        this(PuzzleFile.read(filename).getBoard());
+    }
 
-    SoltrChessConfig(String filename) throws FileNotFoundException {
-        Scanner f = new Scanner(new File(filename));
-        for (int i = 0; i < 4; i++) {
-            String[] line=f.nextLine().split(" ");
-            for (int j = 0; j < 4; j++) {
-                if(!line[j].equals("-")){numPieces++;}
-                board[i][j]=line[j];
+    /**
+     * Create a board from a grid of piece letters, "-" for an empty square.
+     * The grid's size is the board's size.
+     *
+     * @param board grid of piece letters, up to 8x8
+     */
+    public SoltrChessConfig(String[][] board) {
+        this(AttackTable.of(board.length, board.length == 0 ? 0 : board[0].length));
+        for (int i = 0; i < attacks.rows; i++) {
+            if (board[i].length != attacks.cols) {
+                throw new IllegalArgumentException("Row " + i + " should have " + attacks.cols + " squares");
+            }
+            for (int j = 0; j < attacks.cols; j++) {
+                set(i * attacks.cols + j, codeOf(board[i][j]));
             }
         }
+    }
 
+    /**
+     * Create an empty board.
+     *
+     * @param attacks the board's size and capture masks
+     */
+    SoltrChessConfig(AttackTable attacks) {
+        this.attacks = attacks;
+        this.hash = Zobrist.SIZES[attacks.rows][attacks.cols];
     }
+
+    /**
+     * Create a board from its piece code bit planes, as stored in a
+     * PuzzleCorpus.
+     *
+     * @param attacks the board's size and capture masks
+     * @param plane0 bit s is bit 0 of the piece code on square s
+     * @param plane1 bit s is bit 1 of the piece code on square s
+     * @param plane2 bit s is bit 2 of the piece code on square s
+     */
+    SoltrChessConfig(AttackTable attacks, long plane0, long plane1, long plane2) {
+        this(attacks);
+        for (long squares = plane0 | plane1 | plane2; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            set(square, (int) ((plane0 >>> square) & 1 | ((plane1 >>> square) & 1) << 1
+                    | ((plane2 >>> square) & 1) << 2));
+        }
+    }
+
+    /**
+     * Create a board holding a single piece.
+     *
+     * @param attacks the board's size and capture masks
+     * @param square square index, row * cols + col
+     * @param piece the piece code
+     */
+    SoltrChessConfig(AttackTable attacks, int square, int piece) {
+        this(attacks);
+        set(square, piece);
+    }
+
     /**
      * Copy constructor
      *
-     * @param copy SkyscraperConfig instance
+     * @param copy SoltrChessConfig instance
+     * @param row row to change, or -1 for a plain copy
+     * @param col column to change
+     * @param value piece letter to put there, "-" to empty it
      */
     public SoltrChessConfig(SoltrChessConfig copy, int row, int col, String value) {
-        // copy over dimension
-        this.aRow = row;
-        this.aCol = col;
-        // create the new board
-        this.board = new String[4][4];
-        // copy over the rows from the old board to the new one
-        for (int r = 0; r < 4; r++) {
-            System.arraycopy(copy.board[r], 0, this.board[r], 0, 4);
-        }
-        if(row!=-1){this.board[row][col] = value;}
+        this.attacks = copy.attacks;
+        this.occupied = copy.occupied;
+        this.plane0 = copy.plane0;
+        this.plane1 = copy.plane1;
+        this.plane2 = copy.plane2;
+        this.numPieces = copy.numPieces;
+        this.hash = copy.hash;
+        if(row!=-1){set(row * attacks.cols + col, codeOf(value));}
+    }
 
+    /**
+     * Successor constructor: the piece on square from captures the piece on
+     * square to. Only primitives are copied.
+     *
+     * @param parent the board before the capture
+     * @param from square of the capturing piece
+     * @param to square of the captured piece
+     */
+    private SoltrChessConfig(SoltrChessConfig parent, int from, int to) {
+        this(parent, -1, -1, "-");
+        this.from = from;
+        this.to = to;
+        int piece = parent.get(from);
+        set(from, EMPTY);
+        set(to, piece);
     }
 
 /**
  * The main program.
  * @param args command line arguments
- * @throws FileNotFoundException if file not found
+ * @throws IOException if a file cannot be read
  */
 
-    public static void main(String[] args) throws FileNotFoundException {
-        if (args.length != 2) {
-            System.err.println("Usage: java Skyscraper file debug");
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && new File(args[0]).isDirectory()) {
+            // a directory of puzzles is solved in batch mode
+            BatchSolver.main(args);
+        } else if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: java SoltrChessConfig file debug [memo-megabytes]");
+            System.err.println("       java SoltrChessConfig directory [file-or-directory...]");
         } else {
             // pass scanner object to constructor to read initial board
             String fileName = args[0];
@@ -65,14 +170,32 @@ public class SoltrChessConfig implements Configuration{
             System.out.println("Initial config:");
             System.out.println(initConfig);
 
-            // create the backtracker
-            Backtracker bt = new Backtracker();
+            // create the backtracker, remembering dead positions if asked
+            TranspositionTable memo = args.length == 3
+                    ? new TranspositionTable(Long.parseLong(args[2]) << 20)
+                    : null;
+            Backtracker bt = new Backtracker(memo);
+            SolverMetrics metrics = new SolverMetrics();
+            if (debug) {
+                bt.setListener(metrics);
+            }
 
             // start the clock
             double start = System.currentTimeMillis();
 
-            // solve the puzzle
-            Optional<Configuration> solution = bt.solve(initConfig);
+            // solve the puzzle, unless an earlier run already has
+            SolutionCache cache = SolutionCache.openDefault();
+            Optional<Configuration> solution;
+            if (cache == null) {
+                solution = bt.solve(initConfig);
+            } else {
+                MoveList moves = cache.solve(initConfig, bt::solveWithPath);
+                SoltrChessConfig board = initConfig;
+                for (int i = 0; moves != null && i < moves.size(); i++) {
+                    board = board.play(moves.getFrom(i), moves.getTo(i));
+                }
+                solution = moves == null ? Optional.empty() : Optional.of(board);
+            }
 
             // compute the elapsed time
             double elapsed = (System.currentTimeMillis() - start) / 1000.0;
@@ -85,133 +208,536 @@ public class SoltrChessConfig implements Configuration{
             }
 
             System.out.println("Elapsed time: " + elapsed + " seconds.");
+            System.out.println("Nodes: " + bt.getNodes());
+            System.out.println("Pruned: " + bt.getPruned());
+            if (memo != null) {
+                System.out.println(memo);
+            }
+            if (cache != null) {
+                System.out.println(cache);
+                cache.close();
+            }
+            if (debug) {
+                System.out.print(metrics);
+            }
+        }
+    }
+
+    /**
+     * Get the squares a piece may capture on from a square of a board of
+     * some size. Pieces do not block each other, so on a board with pieces
+     * the squares it may capture are this mask and'ed with the occupied
+     * squares.
+     *
+     * @param rows the number of rows, 1 to 8
+     * @param cols the number of columns, 1 to 8
+     * @param piece the piece's letter, one of P B R N K Q
+     * @param square square index, row * cols + col
+     * @return bit t set for each square t the piece attacks
+     */
+    public static long captureMask(int rows, int cols, char piece, int square) {
+        return AttackTable.of(rows, cols).attacks[codeOf(String.valueOf(piece))][square];
+    }
+
+    /**
+     * Convert a piece letter to its code.
+     *
+     * @param letter one of - P B R N K Q
+     * @return the piece code
+     */
+    static int codeOf(String letter) {
+        int code = LETTERS.indexOf(letter.charAt(0));
+        if (letter.length() != 1 || code < 0) {
+            throw new IllegalArgumentException("Unknown piece: " + letter);
         }
+        return code;
+    }
+
+    /**
+     * Get the piece code on a square.
+     *
+     * @param square square index, row * cols + col
+     * @return the piece code, EMPTY if nothing is there
+     */
+    int get(int square) {
+        return (int) ((plane0 >>> square) & 1 | ((plane1 >>> square) & 1) << 1 | ((plane2 >>> square) & 1) << 2);
     }
 
-    public Collection<Configuration> getSuccessorMoves(SoltrChessConfig config, String piece){
+    /**
+     * Put a piece code on a square, keeping the occupancy mask, piece count
+     * and hash in step.
+     *
+     * @param square square index, row * cols + col
+     * @param code the piece code, EMPTY to clear the square
+     */
+    private void set(int square, int code) {
+        hash ^= Zobrist.KEYS[get(square)][square] ^ Zobrist.KEYS[code][square];
+        long bit = 1L << square;
+        plane0 = (plane0 & ~bit) | ((code & 1L) << square);
+        plane1 = (plane1 & ~bit) | (((code >> 1) & 1L) << square);
+        plane2 = (plane2 & ~bit) | (((code >> 2) & 1L) << square);
+        if ((occupied & bit) != 0) {
+            numPieces--;
+        }
+        if (code == EMPTY) {
+            occupied &= ~bit;
+        } else {
+            occupied |= bit;
+            numPieces++;
+        }
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return rows on the board
+     */
+    public int getRows() {
+        return attacks.rows;
+    }
+
+    /**
+     * Get the number of columns.
+     *
+     * @return columns on the board
+     */
+    public int getCols() {
+        return attacks.cols;
+    }
+
+    /**
+     * Get the number of pieces left on the board.
+     *
+     * @return piece count
+     */
+    public int getNumPieces() {
+        return numPieces;
+    }
+
+    /**
+     * Only legal captures are generated: each piece's precomputed attack
+     * mask is intersected with the occupied squares, so every successor is
+     * valid.
+     */
+    @Override
+    public Collection<Configuration> getSuccessors() {
         Collection<Configuration> successors = new ArrayList<>();
-        String testPiece;
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                testPiece = config.board[i][j];
-                if (!testPiece.equals("-")) {
-                    successors.add(new SoltrChessConfig(config,i,j,piece));
-                }
+        for (long pieceSquares = occupied; pieceSquares != 0; pieceSquares &= pieceSquares - 1) {
+            int fromSquare = Long.numberOfTrailingZeros(pieceSquares);
+            for (long captures = targets(fromSquare); captures != 0; captures &= captures - 1) {
+                successors.add(new SoltrChessConfig(this, fromSquare, Long.numberOfTrailingZeros(captures)));
             }
         }
         return successors;
     }
 
+    /**
+     * Captures are found from the attack masks as the iterator reaches
+     * them, and each child is only made by next(), so nothing is built for
+     * the captures a search never tries.
+     */
     @Override
-    public Collection<Configuration> getSuccessors() {
-        Collection<Configuration> successors = new ArrayList<>();
-        String piece;
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                piece = this.board[i][j];
-                if (!piece.equals("-")) {
-                    SoltrChessConfig iMissMyPiece= new SoltrChessConfig(this,i,j,"-");
-                    successors.addAll(getSuccessorMoves(iMissMyPiece,piece));
+    public Iterator<Configuration> successors() {
+        return new Iterator<>() {
+            /** pieces whose captures have not been started */
+            private long pieceSquares = occupied;
+            /** square of the piece whose captures are being handed out */
+            private int fromSquare;
+            /** its captures not handed out yet */
+            private long captures;
+
+            @Override
+            public boolean hasNext() {
+                while (captures == 0 && pieceSquares != 0) {
+                    fromSquare = Long.numberOfTrailingZeros(pieceSquares);
+                    pieceSquares &= pieceSquares - 1;
+                    captures = targets(fromSquare);
+                }
+                return captures != 0;
+            }
+
+            @Override
+            public Configuration next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int toSquare = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                return new SoltrChessConfig(SoltrChessConfig.this, fromSquare, toSquare);
+            }
+        };
+    }
+
+    @Override
+    public boolean forEachSuccessor(Predicate<? super Configuration> action) {
+        for (long pieceSquares = occupied; pieceSquares != 0; pieceSquares &= pieceSquares - 1) {
+            int fromSquare = Long.numberOfTrailingZeros(pieceSquares);
+            for (long captures = targets(fromSquare); captures != 0; captures &= captures - 1) {
+                if (!action.test(new SoltrChessConfig(this, fromSquare, Long.numberOfTrailingZeros(captures)))) {
+                    return false;
                 }
             }
         }
-        return successors;
+        return true;
     }
 
-    public String[][] getBoard() {
-        return board;
+    @Override
+    public int getMove() {
+        return from < 0 ? -1 : MoveList.pack(from, to);
+    }
+
+    /**
+     * Make a move on this board. The move is assumed to be legal.
+     *
+     * @param from square of the capturing piece
+     * @param to square of the captured piece
+     * @return the board after the capture
+     */
+    public SoltrChessConfig play(int from, int to) {
+        return new SoltrChessConfig(this, from, to);
+    }
+
+    /**
+     * Take back a capture: the piece on square to steps back to the empty
+     * square from, and the captured piece reappears on square to.
+     *
+     * @param from empty square the piece could have captured from
+     * @param to square the piece is on now
+     * @param victim code of the piece it captured
+     * @return the board before the capture
+     */
+    SoltrChessConfig unplay(int from, int to, int victim) {
+        SoltrChessConfig before = new SoltrChessConfig(this, -1, -1, "-");
+        before.set(from, get(to));
+        before.set(to, victim);
+        return before;
+    }
+
+    /**
+     * Make a capture on this board in place, for a search that keeps one
+     * mutable board. The move is assumed to be legal.
+     *
+     * @param from square of the capturing piece
+     * @param to square of the captured piece
+     * @return code of the captured piece, for unmakeMove()
+     */
+    int makeMove(int from, int to) {
+        int piece = get(from);
+        int victim = get(to);
+        set(from, EMPTY);
+        set(to, piece);
+        return victim;
+    }
+
+    /**
+     * Take back a capture made by makeMove().
+     *
+     * @param from square the piece captured from
+     * @param to square it captured on
+     * @param victim code of the captured piece
+     */
+    void unmakeMove(int from, int to, int victim) {
+        set(from, get(to));
+        set(to, victim);
     }
 
     @Override
-    public boolean isValid(Configuration config) {
-        String piece;
-        String aPiece="-";
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                piece = config.getBoard()[i][j];
-                if(!piece.equals("-")){
-                    if(this.board[i][j].equals("-")){
-                        aPiece=piece;
-                        aRow=i;
-                        aCol=j;
-                    }else if(!this.board[i][j].equals(piece)){
-                        bCol=j;
-                        bRow=i;
-                    }
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * The hash of this board turned to its canonical orientation, so every
+     * board equivalent to this one under the symmetries that fit it has the
+     * same canonical hash.
+     */
+    @Override
+    public long getCanonicalHash() {
+        return hashUnder(canonicalSymmetry());
+    }
+
+    /**
+     * Find the symmetry that turns this board into its canonical form: of
+     * all the symmetries that fit the board, the one giving the smallest
+     * hash, the first in Symmetry order on a tie.
+     *
+     * @return the symmetry; IDENTITY if the board is already canonical
+     */
+    public Symmetry canonicalSymmetry() {
+        boolean pawns = hasPawns();
+        Symmetry best = Symmetry.IDENTITY;
+        long bestHash = hash;
+        for (Symmetry symmetry : SYMMETRIES) {
+            if (symmetry != Symmetry.IDENTITY && symmetry.fits(attacks.rows, attacks.cols, pawns)) {
+                long turned = hashUnder(symmetry);
+                if (turned < bestHash) {
+                    best = symmetry;
+                    bestHash = turned;
                 }
             }
         }
-        //checks to make sure square you're going to isn't same as square you're in
-        if (aRow==bRow &&aCol==bCol) {
+        return best;
+    }
+
+    /**
+     * Get the canonical form of this board. Equivalent boards have equal
+     * canonical forms, so it is the key to use when boards that are mirror
+     * images of each other should count as one.
+     *
+     * @return this board turned by canonicalSymmetry()
+     */
+    public SoltrChessConfig canonical() {
+        return transform(canonicalSymmetry());
+    }
+
+    /**
+     * Turn or flip this board.
+     *
+     * @param symmetry a symmetry that fits this board
+     * @return the turned board
+     */
+    public SoltrChessConfig transform(Symmetry symmetry) {
+        if (!symmetry.fits(attacks.rows, attacks.cols, hasPawns())) {
+            throw new IllegalArgumentException(symmetry + " does not fit this board");
+        }
+        if (symmetry == Symmetry.IDENTITY) {
+            return this;
+        }
+        byte[] image = attacks.images[symmetry.ordinal()];
+        SoltrChessConfig turned = new SoltrChessConfig(attacks);
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            turned.set(image[square], get(square));
+        }
+        return turned;
+    }
+
+    /**
+     * The hash this board would have after a symmetry, worked out without
+     * building the turned board.
+     */
+    private long hashUnder(Symmetry symmetry) {
+        if (symmetry == Symmetry.IDENTITY) {
+            return hash;
+        }
+        byte[] image = attacks.images[symmetry.ordinal()];
+        long turned = Zobrist.SIZES[attacks.rows][attacks.cols];
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            turned ^= Zobrist.KEYS[get(square)][image[square]];
+        }
+        return turned;
+    }
+
+    /** @return true if there is a pawn on the board */
+    private boolean hasPawns() {
+        // PAWN is code 1: bit 0 set, bits 1 and 2 clear
+        return (occupied & plane0 & ~plane1 & ~plane2) != 0;
+    }
+
+    public String[][] getBoard() {
+        String[][] board = new String[attacks.rows][attacks.cols];
+        for (int i = 0; i < attacks.rows; i++) {
+            for (int j = 0; j < attacks.cols; j++) {
+                board[i][j] = String.valueOf(LETTERS.charAt(get(i * attacks.cols + j)));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Pieces only ever move by capturing, so every piece stays on the
+     * squares occupied now. For each piece this works out every square it
+     * could ever stand on and every square it could ever capture on, then
+     * calls the board dead if
+     * <ul>
+     * <li>two pieces can never be captured, since both would be left, or
+     * a piece that can never be captured has nothing to capture;</li>
+     * <li>the pieces split into groups that can never capture each other,
+     * since each group would keep a piece.</li>
+     * </ul>
+     * Each test over-estimates what the pieces can do, so a board with a
+     * solution is never called dead.
+     */
+    @Override
+    public boolean isDeadEnd() {
+        return numPieces > 1 && isDeadEnd(new long[numPieces], new long[numPieces]);
+    }
+
+    /**
+     * The dead-end test with the caller's scratch space, so a search can
+     * run it without allocating.
+     *
+     * @param reach scratch space, at least one entry per piece
+     * @param hits scratch space, at least one entry per piece
+     * @return true if the board is known to have no solution
+     */
+    boolean isDeadEnd(long[] reach, long[] hits) {
+        if (numPieces <= 1) {
             return false;
         }
-        switch (aPiece) {
-            case "P":
-                return (aRow-1==bRow && (aCol-1==bCol||aCol+1==bCol));
-            case "B":
-                return (Math.abs((bCol - aCol)) == Math.abs((bRow - aRow)));
-            case "R":
-                //case if moving vertically
-                if (bCol == aCol) {
-                    return (Math.abs(bRow - aRow) > 0);
-                }
-                //case if moving horizontally
-                else if (bRow == aRow) {
-                    return (Math.abs(bCol - aCol) > 0);
-                } else {
-                    return false;
+        // reach[i] is every square piece i could stand on, hits[i] every
+        // square it could capture on
+        int i = 0;
+        for (long pieceSquares = occupied; pieceSquares != 0; pieceSquares &= pieceSquares - 1, i++) {
+            int square = Long.numberOfTrailingZeros(pieceSquares);
+            long[] masks = attacks.attacks[get(square)];
+            long seen = 1L << square;
+            long frontier = seen;
+            long captures = 0;
+            while (frontier != 0) {
+                long next = 0;
+                for (; frontier != 0; frontier &= frontier - 1) {
+                    next |= masks[Long.numberOfTrailingZeros(frontier)] & occupied;
                 }
-            case "K":
-                if (bRow == aRow) {
-                    return (Math.abs(bCol - aCol) == 1);
-                }
-                else if (bCol == aCol) {
-                    return (Math.abs(bRow - aRow) == 1);
-                }
-                else {
-                    return (Math.abs(bRow - aRow) == 1 && Math.abs(bCol - aCol) == 1);
-                }
-            case "Q":
-                //edit so it checks rook and bishop cases
-                if (bCol == aCol) {
-                    return (Math.abs(bRow - aRow) > 0);
-                }
-                //case if moving horizontally
-                else if (bRow == aRow) {
-                    return (Math.abs(bCol - aCol) > 0);
-                } else {
-                    return (Math.abs((bCol - aCol)) == Math.abs((bRow - aRow)));
+                captures |= next;
+                frontier = next & ~seen;
+                seen |= next;
+            }
+            reach[i] = seen;
+            hits[i] = captures;
+        }
+        int safe = 0;
+        for (i = 0; i < numPieces; i++) {
+            boolean capturable = false;
+            for (int j = 0; j < numPieces && !capturable; j++) {
+                capturable = j != i && (hits[j] & reach[i]) != 0;
+            }
+            if (!capturable && (++safe > 1 || hits[i] == 0)) {
+                return true;
+            }
+        }
+        // grow the group holding piece 0 until nothing more can join it
+        long group = 1;
+        long groupReach = reach[0];
+        long groupHits = hits[0];
+        for (boolean grew = true; grew; ) {
+            grew = false;
+            for (i = 1; i < numPieces; i++) {
+                if ((group & (1L << i)) == 0 && ((reach[i] & groupHits) != 0 || (hits[i] & groupReach) != 0)) {
+                    group |= 1L << i;
+                    groupReach |= reach[i];
+                    groupHits |= hits[i];
+                    grew = true;
                 }
-            case "N":
-                //checks if knight's total movement is equivalent to three spaces
-                return ((Math.abs(bRow - aRow) + Math.abs(bCol - aCol) == 3) && (Math.abs(bRow - aRow) != 3) && Math.abs(bCol - aCol) != 3);
+            }
+        }
+        return Long.bitCount(group) < numPieces;
+    }
+
+    /**
+     * Count the captures that can be made right now.
+     *
+     * @return the number of legal moves
+     */
+    int countMoves() {
+        int moves = 0;
+        for (long pieceSquares = occupied; pieceSquares != 0; pieceSquares &= pieceSquares - 1) {
+            moves += Long.bitCount(targets(Long.numberOfTrailingZeros(pieceSquares)));
+        }
+        return moves;
+    }
+
+    /**
+     * Count the pieces that could capture on a square right now.
+     *
+     * @param square square index, row * cols + col
+     * @return the number of pieces attacking it
+     */
+    int countAttackers(int square) {
+        int attackers = 0;
+        for (long pieceSquares = occupied; pieceSquares != 0; pieceSquares &= pieceSquares - 1) {
+            int attacker = Long.numberOfTrailingZeros(pieceSquares);
+            attackers += (int) (attacks.attacks[get(attacker)][attacker] >>> square) & 1;
+        }
+        return attackers;
+    }
+
+    /**
+     * Get the squares the piece on a square could capture right now.
+     *
+     * @param square square index, row * cols + col
+     * @return mask of occupied squares that piece attacks
+     */
+    long targets(int square) {
+        return attacks.attacks[get(square)][square] & occupied;
+    }
+
+    /**
+     * Get the square the last move came from.
+     *
+     * @return square index, or -1 if this board was not made by a capture
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    /**
+     * Get the square the last move captured on.
+     *
+     * @return square index, or -1 if this board was not made by a capture
+     */
+    public int getTo() {
+        return to;
+    }
 
+    @Override
+    public boolean isValid(Configuration config) {
+        SoltrChessConfig parent = config instanceof SoltrChessConfig
+                ? (SoltrChessConfig) config
+                : new SoltrChessConfig(config.getBoard());
+        if (from < 0 || parent.attacks != attacks) {
+            return false;
         }
-        return false;
+        // the move must be a legal capture on the parent, and replaying it
+        // on the parent must give this board
+        int piece = parent.get(from);
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+        long kept = ~fromBit & ~toBit;
+        return (parent.targets(from) & toBit) != 0
+                && occupied == (parent.occupied & ~fromBit)
+                && plane0 == ((parent.plane0 & kept) | ((piece & 1) != 0 ? toBit : 0))
+                && plane1 == ((parent.plane1 & kept) | ((piece & 2) != 0 ? toBit : 0))
+                && plane2 == ((parent.plane2 & kept) | ((piece & 4) != 0 ? toBit : 0));
     }
 
     @Override
     public boolean isGoal() {
-        numPieces = 0;
-        for (int row = 0; row < 4; ++row) {
-            for (int col = 0; col < 4; ++col) {
-                if (!board[row][col].equals("-")) {
-                    numPieces++;
-                }
-            }
-        }
         return numPieces<=1;
     }
 
+    /**
+     * Two boards are equal if they are the same size with the same pieces
+     * on the same squares, however they were reached.
+     *
+     * @param other the object to compare to
+     * @return true if the positions are the same
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SoltrChessConfig)) {
+            return false;
+        }
+        SoltrChessConfig board = (SoltrChessConfig) other;
+        return attacks == board.attacks && occupied == board.occupied
+                && plane0 == board.plane0 && plane1 == board.plane1 && plane2 == board.plane2;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        for (int row = 0; row < 4; ++row) {
-            for (int col = 0; col < 4; ++col) {
-                builder.append(board[row][col]).append(" ");
+        for (int row = 0; row < attacks.rows; ++row) {
+            for (int col = 0; col < attacks.cols; ++col) {
+                builder.append(LETTERS.charAt(get(row * attacks.cols + col))).append(" ");
             }
             builder.append('\n');
             }
         return builder.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,557 @@
+package soltrchess.backtracking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Solutions found in earlier runs, kept in a file so they survive restarts
+ * and can be shared by every process on the machine. Boards are stored in
+ * their canonical orientation, so a puzzle and its mirror images share one
+ * entry.
+ * <p>
+ * The most recently used solutions are held in memory. Behind them is the
+ * file, which is only ever appended to and is memory mapped for reading; an
+ * index of where each board's latest record starts is kept in memory. Other
+ * processes' appends are picked up the next time a board is not found.
+ * Appends are made under a lock on the file. When the file grows past its
+ * cap it is compacted: the latest record of each board is kept, newest
+ * first, up to half the cap, written to a new file that replaces the old
+ * one. The old file is marked as superseded so other processes reopen.
+ * <p>
+ * The file is a 16 byte header (magic number, version, flags) followed by
+ * records of: rows and columns as a byte each, the three piece planes as
+ * longs, the solution length as a byte (NO_SOLUTION if there is none), the
+ * moves as shorts, and a CRC32 of the rest of the record. A record torn by
+ * a crash fails its check, and the file is cut back to before it by the
+ * next append.
+ * <p>
+ * Only one SolutionCache per file should be open in a process.
+ */
+public class SolutionCache implements Closeable {
+    /** first bytes of a cache file */
+    private static final int MAGIC = 0x53435343;
+    /** format version */
+    private static final int VERSION = 1;
+    /** bytes before the first record */
+    private static final int HEADER = 16;
+    /** offset of the flags in the header */
+    private static final int FLAGS = 8;
+    /** flag set on a file that compaction has replaced */
+    private static final int SUPERSEDED = 1;
+    /** length byte of a board with no solution */
+    private static final int NO_SOLUTION = 0xFF;
+    /** bytes in a record besides the moves */
+    private static final int FIXED = 2 + 3 * Long.BYTES + 1 + Integer.BYTES;
+    /** system property naming the cache file the model should use */
+    public static final String PROPERTY = "soltrchess.cache";
+    /** default number of solutions held in memory */
+    public static final int DEFAULT_ENTRIES = 4096;
+    /** default cap on the size of the file */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    /** stands in memory for a board with no solution */
+    private static final MoveList NONE = new MoveList(0);
+
+    /** the cache file */
+    private final Path file;
+    /** the file is compacted when it grows past this */
+    private final long maxBytes;
+    /** the most recently used canonical boards and their solutions */
+    private final LinkedHashMap<SoltrChessConfig, MoveList> recent;
+    /** the file, open for reading and appending */
+    private FileChannel channel;
+    /** the file as it was last mapped */
+    private MappedByteBuffer map;
+    /** where indexing got to; records before this are in the index */
+    private long indexed;
+    /** canonical hash of the board in each index slot */
+    private long[] hashes;
+    /** offset of the latest record in each index slot, 0 if the slot is empty */
+    private int[] offsets;
+    /** number of boards in the index */
+    private int boards;
+
+    /** lookups answered from memory */
+    private long hits;
+    /** lookups answered from the file */
+    private long diskHits;
+    /** lookups that found nothing */
+    private long misses;
+    /** records appended */
+    private long appends;
+    /** compactions done by this process */
+    private long compactions;
+
+    private SolutionCache(Path file, int entries, long maxBytes) throws IOException {
+        this.file = file;
+        this.maxBytes = Math.max(maxBytes, HEADER + 64 * (FIXED + 2 * 63));
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SoltrChessConfig, MoveList> eldest) {
+                return size() > entries;
+            }
+        };
+        reopen();
+    }
+
+    /**
+     * Open a cache file, creating it if it does not exist.
+     *
+     * @param file the cache file
+     * @param entries how many solutions to hold in memory
+     * @param maxBytes the file is compacted when it grows past this
+     * @return the cache
+     * @throws IOException if the file cannot be opened or is not a cache
+     */
+    public static SolutionCache open(Path file, int entries, long maxBytes) throws IOException {
+        return new SolutionCache(file, entries, maxBytes);
+    }
+
+    /**
+     * Open the cache file named by the soltrchess.cache system property.
+     *
+     * @return the cache, or null if none is named or it cannot be opened
+     */
+    public static SolutionCache openDefault() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return open(Paths.get(name), DEFAULT_ENTRIES, DEFAULT_MAX_BYTES);
+        } catch (IOException e) {
+            System.err.println("Solution cache not loaded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Look a board up, solving and remembering it if it is not there. The
+     * solver is called without holding the cache's lock.
+     *
+     * @param board the board
+     * @param solver finds the moves for a board, null if there are none
+     * @return the moves from board to a goal, or null if there are none
+     * @throws IOException if the file cannot be read or written
+     */
+    public MoveList solve(SoltrChessConfig board, Function<SoltrChessConfig, MoveList> solver) throws IOException {
+        Symmetry symmetry = board.canonicalSymmetry();
+        SoltrChessConfig canonical = board.transform(symmetry);
+        MoveList moves = lookup(canonical);
+        if (moves == null) {
+            moves = solver.apply(canonical);
+            if (moves == null) {
+                moves = NONE;
+            }
+            store(canonical, moves);
+        }
+        return moves == NONE ? null : moves.transform(symmetry.inverse(), board.getRows(), board.getCols());
+    }
+
+    /**
+     * Is there an answer for a board?
+     *
+     * @param board the board
+     * @return true if its solution, or that it has none, is cached
+     * @throws IOException if the file cannot be read
+     */
+    public boolean contains(SoltrChessConfig board) throws IOException {
+        return lookup(board.transform(board.canonicalSymmetry())) != null;
+    }
+
+    /**
+     * Remember a board's solution.
+     *
+     * @param board the board
+     * @param moves the moves from board to a goal, null if there are none
+     * @throws IOException if the file cannot be written
+     */
+    public void put(SoltrChessConfig board, MoveList moves) throws IOException {
+        Symmetry symmetry = board.canonicalSymmetry();
+        store(board.transform(symmetry),
+                moves == null ? NONE : moves.transform(symmetry, board.getRows(), board.getCols()));
+    }
+
+    /**
+     * Find a canonical board in memory, then in the file.
+     *
+     * @return the moves, NONE if it has no solution, null if it is not cached
+     */
+    private synchronized MoveList lookup(SoltrChessConfig canonical) throws IOException {
+        MoveList moves = recent.get(canonical);
+        if (moves != null) {
+            hits++;
+            return moves;
+        }
+        int record = find(canonical);
+        if (record == 0 && refresh()) {
+            record = find(canonical);
+        }
+        if (record == 0) {
+            misses++;
+            return null;
+        }
+        diskHits++;
+        moves = readMoves(record);
+        recent.put(canonical, moves);
+        return moves;
+    }
+
+    /**
+     * Put a canonical board in memory and append it to the file.
+     */
+    private synchronized void store(SoltrChessConfig canonical, MoveList moves) throws IOException {
+        recent.put(canonical, moves);
+        ByteBuffer record = encode(canonical, moves);
+        FileLock lock = lockCurrentFile();
+        try {
+            // take in other processes' records and drop any torn tail
+            refresh();
+            if (channel.size() > indexed) {
+                channel.truncate(indexed);
+            }
+            int offset = (int) indexed;
+            channel.write(record, offset);
+            appends++;
+            refresh();
+            if (find(canonical) != offset) {
+                throw new IOException(file + ": record at " + offset + " did not read back");
+            }
+            if (indexed > maxBytes) {
+                compact();
+            }
+        } finally {
+            // compaction closes the locked channel, which releases the lock
+            if (lock.isValid()) {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Lock the file for appending, reopening it first if another process
+     * has compacted it.
+     */
+    private FileLock lockCurrentFile() throws IOException {
+        while (true) {
+            FileLock lock = channel.lock();
+            if (!isSuperseded(channel)) {
+                return lock;
+            }
+            lock.release();
+            reopen();
+        }
+    }
+
+    /**
+     * Rewrite the file with the latest record of each board, newest first,
+     * up to half the cap. Called holding the file lock.
+     */
+    private void compact() throws IOException {
+        int[] live = new int[boards];
+        int count = 0;
+        for (int offset : offsets) {
+            if (offset != 0) {
+                live[count++] = offset;
+            }
+        }
+        Arrays.sort(live, 0, count);
+        long budget = maxBytes / 2 - HEADER;
+        int keep = count;
+        while (keep > 0 && budget >= recordLength(live[keep - 1])) {
+            budget -= recordLength(live[--keep]);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header());
+            for (int i = keep; i < count; i++) {
+                out.write(map.duplicate().position(live[i]).limit(live[i] + recordLength(live[i])));
+            }
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, SUPERSEDED), FLAGS);
+        compactions++;
+        reopen();
+    }
+
+    /**
+     * Open the file afresh, e.g. after it was compacted, and index it.
+     */
+    private void reopen() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() < HEADER) {
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() < HEADER) {
+                    channel.truncate(0);
+                    channel.write(header(), 0);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+        map = null;
+        indexed = HEADER;
+        hashes = new long[64];
+        offsets = new int[64];
+        boards = 0;
+        refresh();
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a solution cache");
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException(file + " is cache version " + map.getInt(4) + ", not " + VERSION);
+        }
+    }
+
+    /**
+     * Map the file again if it has grown and index the new records.
+     *
+     * @return true if any records were added to the index
+     * @throws IOException if the file cannot be read
+     */
+    private boolean refresh() throws IOException {
+        if (map != null && (map.getInt(FLAGS) & SUPERSEDED) != 0) {
+            reopen();
+            return true;
+        }
+        long size = channel.size();
+        if (map != null && size <= map.limit()) {
+            return false;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(file + " is too large");
+        }
+        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int before = boards;
+        long start = indexed;
+        while (indexed + FIXED <= size) {
+            int offset = (int) indexed;
+            int length = recordLength(offset);
+            if (offset + length > size || !checksumMatches(offset, length)) {
+                break;
+            }
+            index(hashOf(offset), offset);
+            indexed += length;
+        }
+        return boards != before || indexed != start;
+    }
+
+    /**
+     * Find the latest record of a canonical board.
+     *
+     * @return its offset, 0 if there is none
+     */
+    private int find(SoltrChessConfig canonical) {
+        long hash = hashOf(canonical);
+        int mask = offsets.length - 1;
+        for (int slot = slotOf(hash, mask); offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && matches(offsets[slot], canonical)) {
+                return offsets[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Point the index at a record, replacing any earlier record of the
+     * same board.
+     */
+    private void index(long hash, int offset) {
+        if (2 * (boards + 1) > offsets.length) {
+            long[] oldHashes = hashes;
+            int[] oldOffsets = offsets;
+            hashes = new long[oldHashes.length * 2];
+            offsets = new int[oldOffsets.length * 2];
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != 0) {
+                    int slot = slotOf(oldHashes[i], offsets.length - 1);
+                    while (offsets[slot] != 0) {
+                        slot = (slot + 1) & (offsets.length - 1);
+                    }
+                    hashes[slot] = oldHashes[i];
+                    offsets[slot] = oldOffsets[i];
+                }
+            }
+        }
+        int mask = offsets.length - 1;
+        int slot = slotOf(hash, mask);
+        while (offsets[slot] != 0) {
+            if (hashes[slot] == hash && sameBoard(offsets[slot], offset)) {
+                offsets[slot] = offset;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        offsets[slot] = offset;
+        boards++;
+    }
+
+    private static int slotOf(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Hash a board's key: its size and piece planes.
+     */
+    private static long keyHash(int size, long plane0, long plane1, long plane2) {
+        long hash = size * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ plane0) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ plane1) * 0x94D049BB133111EBL;
+        hash = (hash ^ plane2) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 31);
+    }
+
+    private long hashOf(int offset) {
+        return keyHash(map.getShort(offset), map.getLong(offset + 2), map.getLong(offset + 10),
+                map.getLong(offset + 18));
+    }
+
+    private static long hashOf(SoltrChessConfig board) {
+        return keyHash((short) (board.getRows() << 8 | board.getCols()), board.plane0, board.plane1, board.plane2);
+    }
+
+    private boolean matches(int offset, SoltrChessConfig board) {
+        return (map.get(offset) & 0xFF) == board.getRows() && (map.get(offset + 1) & 0xFF) == board.getCols()
+                && map.getLong(offset + 2) == board.plane0 && map.getLong(offset + 10) == board.plane1
+                && map.getLong(offset + 18) == board.plane2;
+    }
+
+    private boolean sameBoard(int offset, int other) {
+        return map.getShort(offset) == map.getShort(other) && map.getLong(offset + 2) == map.getLong(other + 2)
+                && map.getLong(offset + 10) == map.getLong(other + 10)
+                && map.getLong(offset + 18) == map.getLong(other + 18);
+    }
+
+    private int recordLength(int offset) {
+        int length = map.get(offset + 26) & 0xFF;
+        return FIXED + (length == NO_SOLUTION ? 0 : 2 * length);
+    }
+
+    private boolean checksumMatches(int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(map.duplicate().position(offset).limit(offset + length - Integer.BYTES));
+        return map.getInt(offset + length - Integer.BYTES) == (int) crc.getValue();
+    }
+
+    private MoveList readMoves(int offset) {
+        int length = map.get(offset + 26) & 0xFF;
+        if (length == NO_SOLUTION) {
+            return NONE;
+        }
+        MoveList moves = new MoveList(length);
+        for (int i = 0; i < length; i++) {
+            moves.set(i, map.getShort(offset + 27 + 2 * i) & 0xFFFF);
+        }
+        return moves;
+    }
+
+    private static ByteBuffer encode(SoltrChessConfig board, MoveList moves) {
+        int length = moves == NONE ? 0 : moves.size();
+        ByteBuffer record = ByteBuffer.allocate(FIXED + 2 * length);
+        record.put((byte) board.getRows()).put((byte) board.getCols());
+        record.putLong(board.plane0).putLong(board.plane1).putLong(board.plane2);
+        record.put((byte) (moves == NONE ? NO_SOLUTION : length));
+        for (int i = 0; i < length; i++) {
+            record.putShort((short) MoveList.pack(moves.getFrom(i), moves.getTo(i)));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        return record.flip();
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+    }
+
+    private static boolean isSuperseded(FileChannel channel) throws IOException {
+        ByteBuffer flags = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(flags, FLAGS);
+        return (flags.getInt(0) & SUPERSEDED) != 0;
+    }
+
+    /**
+     * @return the number of boards in the file
+     */
+    public synchronized int size() {
+        return boards;
+    }
+
+    /**
+     * @return the fraction of lookups answered from memory or the file
+     */
+    public synchronized double hitRate() {
+        long lookups = hits + diskHits + misses;
+        return lookups == 0 ? 0 : (double) (hits + diskHits) / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("cache: %d hits, %d from disk, %d misses (%.1f%%), %d appended, "
+                        + "%d compactions, %d boards, %d bytes",
+                hits, diskHits, misses, 100 * hitRate(), appends, compactions, boards, indexed);
+    }
+
+    /**
+     * Close the file. Solutions already appended stay in it.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Show what is in a cache file.
+     *
+     * @param args cache-file
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java SolutionCache cache-file");
+            return;
+        }
+        try (SolutionCache cache = open(Paths.get(args[0]), 1, DEFAULT_MAX_BYTES)) {
+            List<Integer> lengths = new ArrayList<>();
+            int unsolvable = 0;
+            for (int offset : cache.offsets) {
+                if (offset != 0) {
+                    int length = cache.map.get(offset + 26) & 0xFF;
+                    if (length == NO_SOLUTION) {
+                        unsolvable++;
+                    } else {
+                        lengths.add(length);
+                    }
+                }
+            }
+            System.out.printf("%d boards, %d with no solution, %d bytes, mean solution %.1f moves%n",
+                    cache.boards, unsolvable, cache.indexed,
+                    lengths.stream().mapToInt(Integer::intValue).average().orElse(0));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package soltrchess.backtracking;
+
+import java.util.Arrays;
+
+/**
+ * The solution counts countSolutions() has worked out so far, by position
+ * hash. Entries live in open-addressed primitive arrays that grow up to a
+ * cap; once the cap is reached further positions are simply not
+ * remembered, so counts stay exact but those positions may be counted more
+ * than once. A table is reused from count to count: clear() forgets every
+ * entry without touching the arrays, and a table a big count grew is given
+ * back.
+ */
+class SolutionCountTable {
+    /** slots in a new table */
+    private static final int INITIAL_SLOTS = 1 << 12;
+    /** a table bigger than this, about 1 MB, is given back by clear() */
+    private static final int KEPT_SLOTS = 1 << 16;
+
+    /** the most positions remembered by one count */
+    private final int maxPositions;
+    /** hash of the position in each slot */
+    private long[] keys;
+    /** count number each slot was stored under; older slots are empty */
+    private int[] stamps;
+    /** solution count of the position in each slot */
+    private long[] counts;
+    /** the current count's number */
+    private int stamp = 1;
+    /** slots taken by the current count */
+    private int filled;
+
+    /**
+     * Create an empty table.
+     *
+     * @param maxPositions the most positions to remember at once
+     */
+    SolutionCountTable(int maxPositions) {
+        this.maxPositions = maxPositions;
+        allocate(INITIAL_SLOTS);
+    }
+
+    /** Forget every position, ready for a new count. */
+    void clear() {
+        if (keys.length > KEPT_SLOTS) {
+            allocate(INITIAL_SLOTS);
+        }
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        filled = 0;
+    }
+
+    /**
+     * Look a position's count up.
+     *
+     * @param hash the position's hash
+     * @return its count, or -1 if it is not remembered
+     */
+    long get(long hash) {
+        int mask = keys.length - 1;
+        for (int slot = slotOf(hash, mask); stamps[slot] == stamp; slot = (slot + 1) & mask) {
+            if (keys[slot] == hash) {
+                return counts[slot];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remember a position's count, unless the table is full.
+     *
+     * @param hash the position's hash, not already in the table
+     * @param count its solution count
+     */
+    void put(long hash, long count) {
+        if (filled >= maxPositions) {
+            return;
+        }
+        if (2 * (filled + 1) > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(hash, mask);
+        while (stamps[slot] == stamp) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = hash;
+        stamps[slot] = stamp;
+        counts[slot] = count;
+        filled++;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldStamps = stamps;
+        long[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        filled = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] == stamp) {
+                put(oldKeys[i], oldCounts[i]);
+            }
+        }
+    }
+
+    /** Replace the table with an empty one. */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        stamps = new int[capacity];
+        counts = new long[capacity];
+    }
+
+    private static int slotOf(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
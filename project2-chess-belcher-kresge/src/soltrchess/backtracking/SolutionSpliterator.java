@@ -0,0 +1,74 @@
+package soltrchess.backtracking;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Walks the whole successor tree depth first, handing out one solution per
+ * call to tryAdvance(). The search is kept on an explicit stack of successor
+ * iterators so it can stop after any solution and pick up where it left off.
+ */
+class SolutionSpliterator extends Spliterators.AbstractSpliterator<MoveList> {
+    /** the configuration at each level of the current path */
+    private final List<Configuration> configs = new ArrayList<>();
+    /** the untried successors at each level of the current path */
+    private final List<Iterator<Configuration>> pending = new ArrayList<>();
+
+    /**
+     * Create a spliterator over every solution from a configuration.
+     *
+     * @param start the starting configuration
+     */
+    SolutionSpliterator(Configuration start) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        push(start);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super MoveList> action) {
+        while (!pending.isEmpty()) {
+            int top = pending.size() - 1;
+            Iterator<Configuration> children = pending.get(top);
+            if (!children.hasNext()) {
+                pop();
+                continue;
+            }
+            Configuration child = children.next();
+            if (child.isGoal()) {
+                action.accept(path(child));
+                return true;
+            }
+            push(child);
+        }
+        return false;
+    }
+
+    /**
+     * The moves from the start to a goal one move below the current path.
+     *
+     * @param goal the goal configuration
+     * @return the solution
+     */
+    private MoveList path(Configuration goal) {
+        MoveList moves = new MoveList(configs.size());
+        for (int i = 1; i < configs.size(); i++) {
+            moves.set(i - 1, configs.get(i).getMove());
+        }
+        moves.set(configs.size() - 1, goal.getMove());
+        return moves;
+    }
+
+    private void push(Configuration config) {
+        configs.add(config);
+        pending.add(config.successors());
+    }
+
+    private void pop() {
+        configs.remove(configs.size() - 1);
+        pending.remove(pending.size() - 1);
+    }
+}
@@ -0,0 +1,299 @@
+package soltrchess.backtracking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+import static soltrchess.backtracking.SoltrChessConfig.*;
+
+/**
+ * The answer for every 4x4 board with up to N pieces, worked out ahead of
+ * time. Each board has one byte in the table: DEAD if it cannot be solved,
+ * GOAL if it has one piece left, and otherwise a move that keeps it
+ * solvable, packed as the from square in the high four bits and the to
+ * square in the low four. Looking a board up
+ * needs no search, and the table is memory mapped so it costs no heap.
+ * <p>
+ * Boards are ranked by piece count, then by which squares are occupied
+ * (the combinatorial number of the set of squares), then by the pieces on
+ * those squares read as base 6 digits in square order. The file is a 16
+ * byte header (magic number, N) followed by one byte per rank.
+ */
+public class SolvabilityTable {
+    /** table entry for a board that cannot be solved */
+    public static final int DEAD = 0xFF;
+    /** table entry for a board that is already solved; not a legal move */
+    public static final int GOAL = 0x00;
+    /** first bytes of a table file */
+    private static final int MAGIC = 0x53435431;
+    /** bytes before the first entry */
+    private static final int HEADER = 16;
+    /** rows and columns of the boards in the table */
+    private static final int DIM = 4;
+    /** squares on the boards in the table */
+    private static final int SQUARES = DIM * DIM;
+    /** bits used for each square's piece code in a packed board */
+    private static final int BITS = 3;
+    /** mask for a single piece code in a packed board */
+    private static final long CODE_MASK = (1L << BITS) - 1;
+    /** capture masks for a 4x4 board */
+    private static final long[][] ATTACKS = AttackTable.of(DIM, DIM).attacks;
+    /** kinds of piece, the base of the piece digits */
+    private static final int KINDS = LETTERS.length() - 1;
+    /** system property naming the table file the model should use */
+    public static final String PROPERTY = "soltrchess.table";
+
+    /** BINOMIAL[n][k] is n choose k */
+    private static final long[][] BINOMIAL = new long[SQUARES + 1][SQUARES + 1];
+
+    static {
+        for (int n = 0; n <= SQUARES; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    /** the entries, one byte per board */
+    private final ByteBuffer entries;
+    /** the largest piece count in the table */
+    private final int maxPieces;
+
+    private SolvabilityTable(ByteBuffer entries, int maxPieces) {
+        this.entries = entries;
+        this.maxPieces = maxPieces;
+    }
+
+    /**
+     * Map a table file into memory.
+     *
+     * @param file a file written by build()
+     * @return the table
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static SolvabilityTable open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER || map.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a solvability table");
+            }
+            int maxPieces = map.getInt(4);
+            if (maxPieces < 1 || maxPieces > SQUARES || channel.size() != HEADER + offset(maxPieces + 1)) {
+                throw new IOException(file + " is the wrong size for " + maxPieces + " pieces");
+            }
+            // the mapping stays valid after the channel is closed
+            return new SolvabilityTable(map.position(HEADER).slice(), maxPieces);
+        }
+    }
+
+    /**
+     * Open the table named by the soltrchess.table system property.
+     *
+     * @return the table, or null if none is named or it cannot be opened
+     */
+    public static SolvabilityTable openDefault() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return open(Paths.get(name));
+        } catch (IOException e) {
+            System.err.println("Solvability table not loaded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Does the table have an entry for this board?
+     *
+     * @param config the board
+     * @return true if it has few enough pieces
+     */
+    public boolean covers(SoltrChessConfig config) {
+        return config.getRows() == DIM && config.getCols() == DIM && config.numPieces <= maxPieces;
+    }
+
+    /**
+     * Look a board up.
+     *
+     * @param config a board the table covers
+     * @return DEAD, GOAL, or a winning move packed as from << 4 | to
+     */
+    public int lookup(SoltrChessConfig config) {
+        long pieces = 0;
+        for (int square = 0; square < SQUARES; square++) {
+            pieces |= (long) config.get(square) << (square * BITS);
+        }
+        return entries.get((int) rank((int) config.occupied, pieces)) & 0xFF;
+    }
+
+    /**
+     * Solve a board by following the table's moves.
+     *
+     * @param config a board the table covers
+     * @return the moves to a goal, or null if there is no solution
+     */
+    public MoveList solve(SoltrChessConfig config) {
+        if (lookup(config) == DEAD) {
+            return null;
+        }
+        MoveList moves = new MoveList(Math.max(0, config.numPieces - 1));
+        for (int i = 0; i < moves.size(); i++) {
+            int move = lookup(config);
+            moves.set(i, MoveList.pack(move >> 4, move & 0xF));
+            config = config.play(move >> 4, move & 0xF);
+        }
+        return moves;
+    }
+
+    /**
+     * The number of boards with fewer than k pieces, which is where the
+     * boards with k pieces start.
+     */
+    private static long offset(int k) {
+        long offset = 0;
+        long digits = 1;
+        for (int j = 0; j < k; j++) {
+            offset += BINOMIAL[SQUARES][j] * digits;
+            digits *= KINDS;
+        }
+        return offset;
+    }
+
+    /**
+     * The rank of a board: its position in the table.
+     *
+     * @param occupied the occupied squares
+     * @param pieces the packed piece codes
+     * @return the rank
+     */
+    static long rank(int occupied, long pieces) {
+        int k = Integer.bitCount(occupied);
+        long occupiedRank = 0;
+        long digits = 0;
+        int i = 0;
+        for (int squares = occupied; squares != 0; squares &= squares - 1) {
+            int square = Integer.numberOfTrailingZeros(squares);
+            i++;
+            occupiedRank += BINOMIAL[square][i];
+            int piece = (int) ((pieces >>> (square * BITS)) & CODE_MASK);
+            digits = digits * KINDS + (piece - 1);
+        }
+        return offset(k) + occupiedRank * pow(KINDS, k) + digits;
+    }
+
+    private static long pow(int base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    /**
+     * Work out every board up to some number of pieces and write the table.
+     * Boards are done in order of piece count, so when a board is reached
+     * every board one capture away already has its answer.
+     *
+     * @param maxPieces the largest piece count to include
+     * @param file where to write the table
+     * @throws IOException if the file cannot be written
+     */
+    public static void build(int maxPieces, Path file) throws IOException {
+        long size = offset(maxPieces + 1);
+        if (size > Integer.MAX_VALUE - HEADER) {
+            throw new IllegalArgumentException(maxPieces + " pieces is too many for one table");
+        }
+        // the empty board counts as solved, like a board with one piece
+        byte[] table = new byte[(int) size];
+        for (int k = 1; k <= maxPieces; k++) {
+            int pieceCount = k;
+            // all k-subsets of squares in order of rank, by Gosper's hack
+            int[] subsets = new int[(int) BINOMIAL[SQUARES][k]];
+            int subset = (1 << k) - 1;
+            for (int r = 0; r < subsets.length; r++) {
+                subsets[r] = subset;
+                int low = subset & -subset;
+                int ripple = subset + low;
+                subset = (((ripple ^ subset) >>> 2) / low) | ripple;
+            }
+            IntStream.range(0, subsets.length).parallel()
+                    .forEach(r -> solveSubset(table, subsets[r], pieceCount));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(maxPieces).rewind();
+            channel.write(header);
+            channel.write(ByteBuffer.wrap(table));
+        }
+    }
+
+    /**
+     * Fill in the entries for every way of putting pieces on a set of
+     * squares.
+     */
+    private static void solveSubset(byte[] table, int occupied, int k) {
+        int[] squares = new int[k];
+        int i = 0;
+        for (int bits = occupied; bits != 0; bits &= bits - 1) {
+            squares[i++] = Integer.numberOfTrailingZeros(bits);
+        }
+        long combinations = pow(KINDS, k);
+        for (long digits = 0; digits < combinations; digits++) {
+            long pieces = 0;
+            long rest = digits;
+            for (int j = k - 1; j >= 0; j--) {
+                pieces |= (rest % KINDS + 1) << (squares[j] * BITS);
+                rest /= KINDS;
+            }
+            int rank = (int) rank(occupied, pieces);
+            table[rank] = (byte) (k == 1 ? GOAL : winningMove(table, occupied, pieces));
+        }
+    }
+
+    /**
+     * Find a capture that leads to a solvable board.
+     *
+     * @return the move, or DEAD if there is none
+     */
+    private static int winningMove(byte[] table, int occupied, long pieces) {
+        for (int froms = occupied; froms != 0; froms &= froms - 1) {
+            int from = Integer.numberOfTrailingZeros(froms);
+            long piece = (pieces >>> (from * BITS)) & CODE_MASK;
+            for (int tos = (int) ATTACKS[(int) piece][from] & occupied; tos != 0; tos &= tos - 1) {
+                int to = Integer.numberOfTrailingZeros(tos);
+                long after = pieces & ~(CODE_MASK << (from * BITS)) & ~(CODE_MASK << (to * BITS));
+                after |= piece << (to * BITS);
+                if ((table[(int) rank(occupied & ~(1 << from), after)] & 0xFF) != DEAD) {
+                    return from << 4 | to;
+                }
+            }
+        }
+        return DEAD;
+    }
+
+    /**
+     * The table builder.
+     * @param args max-pieces output-file
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java SolvabilityTable max-pieces output-file");
+            return;
+        }
+        int maxPieces = Integer.parseInt(args[0]);
+        long start = System.nanoTime();
+        build(maxPieces, Paths.get(args[1]));
+        System.err.printf("%d boards up to %d pieces in %.1f seconds%n",
+                offset(maxPieces + 1), maxPieces, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,64 @@
+package soltrchess.backtracking;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one top-level Backtracker search. It is
+ * only filled in while a recording has the event turned on, e.g.
+ * <pre>
+ * java -XX:StartFlightRecording:filename=solve.jfr ...
+ * jfr print --events soltrchess.Solve solve.jfr
+ * </pre>
+ * or by attaching to a running JVM with jcmd PID JFR.start.
+ */
+@Name("soltrchess.Solve")
+@Label("Solitaire Chess Search")
+@Category({"Solitaire Chess", "Solver"})
+@Description("One top-level search by a Backtracker")
+@StackTrace(false)
+class SolveEvent extends Event {
+    @Label("Search")
+    @Description("solve, solveWithPath or countSolutions")
+    String search;
+
+    @Label("Start Hash")
+    @Description("Zobrist hash of the starting configuration, 0 if it has none")
+    long startHash;
+
+    @Label("Solved")
+    boolean solved;
+
+    @Label("Nodes")
+    @Description("Configurations visited")
+    long nodes;
+
+    @Label("Expanded")
+    @Description("Configurations whose successors were generated")
+    long expanded;
+
+    @Label("Generated")
+    @Description("Successors generated")
+    long generated;
+
+    @Label("Rejected")
+    @Description("Successors rejected by isValid")
+    long rejected;
+
+    @Label("Pruned")
+    @Description("Configurations cut off by the dead-end test")
+    long pruned;
+
+    @Label("Memo Probes")
+    long memoProbes;
+
+    @Label("Memo Hits")
+    long memoHits;
+
+    @Label("Max Depth")
+    int maxDepth;
+}
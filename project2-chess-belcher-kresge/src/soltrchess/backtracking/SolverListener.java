@@ -0,0 +1,106 @@
+package soltrchess.backtracking;
+
+/**
+ * Watches a Backtracker search. Every method does nothing by default, so a
+ * listener only overrides what it wants to hear about. Depth is the number
+ * of moves made from the starting configuration.
+ */
+public interface SolverListener {
+    /**
+     * A configuration was visited and tested for being a goal.
+     *
+     * @param depth the configuration's depth
+     * @param goal true if it is a goal
+     */
+    default void goalChecked(int depth, boolean goal) {
+    }
+
+    /**
+     * A configuration's successors were generated, so it is being expanded.
+     *
+     * @param depth the configuration's depth
+     * @param count number of successors, valid or not
+     */
+    default void successorsGenerated(int depth, int count) {
+    }
+
+    /**
+     * A successor failed isValid() and was skipped.
+     *
+     * @param depth the depth of its parent
+     */
+    default void successorRejected(int depth) {
+    }
+
+    /**
+     * A configuration was looked up in the memo.
+     *
+     * @param depth the configuration's depth
+     * @param hit true if the memo already had its answer
+     */
+    default void memoProbed(int depth, boolean hit) {
+    }
+
+    /**
+     * A configuration was cut off by the dead-end test.
+     *
+     * @param depth the configuration's depth
+     */
+    default void pruned(int depth) {
+    }
+
+    /**
+     * A top-level search has finished.
+     *
+     * @param solved true if it found a solution
+     */
+    default void searchFinished(boolean solved) {
+    }
+
+    /**
+     * Tell two listeners about everything.
+     *
+     * @param first told first
+     * @param second told second
+     * @return a listener passing each call on to both
+     */
+    static SolverListener both(SolverListener first, SolverListener second) {
+        return new SolverListener() {
+            @Override
+            public void goalChecked(int depth, boolean goal) {
+                first.goalChecked(depth, goal);
+                second.goalChecked(depth, goal);
+            }
+
+            @Override
+            public void successorsGenerated(int depth, int count) {
+                first.successorsGenerated(depth, count);
+                second.successorsGenerated(depth, count);
+            }
+
+            @Override
+            public void successorRejected(int depth) {
+                first.successorRejected(depth);
+                second.successorRejected(depth);
+            }
+
+            @Override
+            public void memoProbed(int depth, boolean hit) {
+                first.memoProbed(depth, hit);
+                second.memoProbed(depth, hit);
+            }
+
+            @Override
+            public void pruned(int depth) {
+                first.pruned(depth);
+                second.pruned(depth);
+            }
+
+            @Override
+            public void searchFinished(boolean solved) {
+                first.searchFinished(solved);
+                second.searchFinished(solved);
+            }
+        };
+    }
+}
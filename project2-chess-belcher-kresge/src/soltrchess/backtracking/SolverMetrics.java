@@ -0,0 +1,196 @@
+package soltrchess.backtracking;
+
+import java.util.Arrays;
+
+/**
+ * A SolverListener that counts what the search does: nodes, expansions,
+ * successors generated and rejected, memo hits, pruning, and the branching
+ * factor at each depth. Counts add up over every search it watches until
+ * reset(). It is not thread safe; give each backtracker its own.
+ */
+public class SolverMetrics implements SolverListener {
+    /** configurations goal-tested */
+    private long goalChecks;
+    /** goals found */
+    private long goals;
+    /** configurations whose successors were generated */
+    private long expanded;
+    /** successors generated */
+    private long generated;
+    /** successors that failed isValid() */
+    private long rejected;
+    /** memo lookups */
+    private long memoProbes;
+    /** memo lookups that found an answer */
+    private long memoHits;
+    /** configurations cut off by the dead-end test */
+    private long pruned;
+    /** top-level searches finished */
+    private long searches;
+    /** top-level searches that found a solution */
+    private long solved;
+    /** deepest configuration visited */
+    private int maxDepth;
+    /** expandedAt[d] is the number of configurations expanded at depth d */
+    private long[] expandedAt = new long[16];
+    /** generatedAt[d] is the number of successors generated at depth d */
+    private long[] generatedAt = new long[16];
+
+    @Override
+    public void goalChecked(int depth, boolean goal) {
+        goalChecks++;
+        if (goal) {
+            goals++;
+        }
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    @Override
+    public void successorsGenerated(int depth, int count) {
+        if (depth >= expandedAt.length) {
+            int length = Math.max(depth + 1, expandedAt.length * 2);
+            expandedAt = Arrays.copyOf(expandedAt, length);
+            generatedAt = Arrays.copyOf(generatedAt, length);
+        }
+        expanded++;
+        generated += count;
+        expandedAt[depth]++;
+        generatedAt[depth] += count;
+    }
+
+    @Override
+    public void successorRejected(int depth) {
+        rejected++;
+    }
+
+    @Override
+    public void memoProbed(int depth, boolean hit) {
+        memoProbes++;
+        if (hit) {
+            memoHits++;
+        }
+    }
+
+    @Override
+    public void pruned(int depth) {
+        pruned++;
+    }
+
+    @Override
+    public void searchFinished(boolean solved) {
+        searches++;
+        if (solved) {
+            this.solved++;
+        }
+    }
+
+    /**
+     * Forget every count.
+     */
+    public void reset() {
+        goalChecks = goals = expanded = generated = rejected = 0;
+        memoProbes = memoHits = pruned = searches = solved = 0;
+        maxDepth = 0;
+        Arrays.fill(expandedAt, 0);
+        Arrays.fill(generatedAt, 0);
+    }
+
+    /** @return configurations visited, each of them goal-tested once */
+    public long getGoalChecks() {
+        return goalChecks;
+    }
+
+    /** @return goals reached */
+    public long getGoals() {
+        return goals;
+    }
+
+    /** @return configurations expanded */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /** @return successors generated */
+    public long getGenerated() {
+        return generated;
+    }
+
+    /** @return successors rejected by isValid() */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /** @return memo lookups */
+    public long getMemoProbes() {
+        return memoProbes;
+    }
+
+    /** @return memo lookups that found an answer */
+    public long getMemoHits() {
+        return memoHits;
+    }
+
+    /** @return fraction of memo lookups that found an answer, 0 if none */
+    public double getMemoHitRate() {
+        return memoProbes == 0 ? 0 : (double) memoHits / memoProbes;
+    }
+
+    /** @return configurations cut off by the dead-end test */
+    public long getPruned() {
+        return pruned;
+    }
+
+    /** @return top-level searches finished */
+    public long getSearches() {
+        return searches;
+    }
+
+    /** @return top-level searches that found a solution */
+    public long getSolved() {
+        return solved;
+    }
+
+    /** @return the deepest depth visited */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Get the average number of successors of the configurations expanded
+     * at each depth.
+     *
+     * @return branching factor indexed by depth, up to the deepest
+     *         expansion
+     */
+    public double[] getBranching() {
+        int depths = expandedAt.length;
+        while (depths > 0 && expandedAt[depths - 1] == 0) {
+            depths--;
+        }
+        double[] branching = new double[depths];
+        for (int d = 0; d < depths; d++) {
+            branching[d] = expandedAt[d] == 0 ? 0 : (double) generatedAt[d] / expandedAt[d];
+        }
+        return branching;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Searches: %d (%d solved)%n", searches, solved));
+        report.append(String.format("Nodes: %d (%d goals), expanded: %d, max depth: %d%n",
+                goalChecks, goals, expanded, maxDepth));
+        report.append(String.format("Successors: %d generated, %d rejected by isValid%n", generated, rejected));
+        report.append(String.format("Memo: %d probes, %d hits (%.1f%%)%n", memoProbes, memoHits,
+                100 * getMemoHitRate()));
+        report.append(String.format("Pruned: %d%n", pruned));
+        report.append("Branching by depth:");
+        double[] branching = getBranching();
+        for (int d = 0; d < branching.length; d++) {
+            report.append(String.format(" %d:%.2f", d, branching[d]));
+        }
+        return report.append('\n').toString();
+    }
+}
@@ -0,0 +1,90 @@
+package soltrchess.backtracking;
+
+/**
+ * The eight ways a board can be turned or flipped over onto itself. Every
+ * piece's capture rules look the same after any of them except the pawn's,
+ * which only captures upward, so a board with pawns only has the identity
+ * and the left-right mirror. A board that is not square cannot be turned a
+ * quarter turn or flipped about a diagonal. Equivalent boards have the same
+ * solutions once the moves are turned back, so the solver only needs to
+ * look at one of them.
+ */
+public enum Symmetry {
+    /** leave the board as it is */
+    IDENTITY(false, true),
+    /** swap the left and right sides */
+    MIRROR(false, true),
+    /** swap the top and bottom */
+    FLIP(false, false),
+    /** half turn */
+    ROTATE_180(false, false),
+    /** flip about the main diagonal */
+    TRANSPOSE(true, false),
+    /** flip about the other diagonal */
+    ANTI_TRANSPOSE(true, false),
+    /** quarter turn clockwise */
+    ROTATE_90(true, false),
+    /** quarter turn anticlockwise */
+    ROTATE_270(true, false);
+
+    /** does it turn rows into columns? */
+    private final boolean swapsAxes;
+    /** does it keep pawns capturing upward? */
+    private final boolean keepsPawns;
+
+    Symmetry(boolean swapsAxes, boolean keepsPawns) {
+        this.swapsAxes = swapsAxes;
+        this.keepsPawns = keepsPawns;
+    }
+
+    /**
+     * Can this symmetry be applied to a board?
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param pawns true if there is a pawn on the board
+     * @return true if the board turned this way plays the same
+     */
+    public boolean fits(int rows, int cols, boolean pawns) {
+        return (!swapsAxes || rows == cols) && (keepsPawns || !pawns);
+    }
+
+    /**
+     * Find where a square goes. Only symmetries that fit the board may be
+     * used.
+     *
+     * @param square square index, row * cols + col
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the square's index on the turned board
+     */
+    public int apply(int square, int rows, int cols) {
+        int row = square / cols;
+        int col = square % cols;
+        int lastRow = rows - 1;
+        int lastCol = cols - 1;
+        switch (this) {
+            case MIRROR: return row * cols + (lastCol - col);
+            case FLIP: return (lastRow - row) * cols + col;
+            case ROTATE_180: return (lastRow - row) * cols + (lastCol - col);
+            case TRANSPOSE: return col * rows + row;
+            case ANTI_TRANSPOSE: return (lastCol - col) * rows + (lastRow - row);
+            case ROTATE_90: return col * rows + (lastRow - row);
+            case ROTATE_270: return (lastCol - col) * rows + row;
+            default: return square;
+        }
+    }
+
+    /**
+     * Get the symmetry that undoes this one.
+     *
+     * @return the inverse
+     */
+    public Symmetry inverse() {
+        switch (this) {
+            case ROTATE_90: return ROTATE_270;
+            case ROTATE_270: return ROTATE_90;
+            default: return this;
+        }
+    }
+}
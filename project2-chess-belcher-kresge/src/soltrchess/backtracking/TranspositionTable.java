@@ -0,0 +1,135 @@
+package soltrchess.backtracking;
+
+import java.util.Arrays;
+
+/**
+ * A bounded memo of positions the backtracker has proven to have no
+ * solution. Positions are stored by their 64 bit hash in a fixed size table
+ * of two-slot buckets. When both slots of a bucket are taken, the entry that
+ * took the fewest nodes to disprove is evicted, since it is the cheapest one
+ * to rediscover.
+ */
+public class TranspositionTable {
+    /** bytes used by one slot: the hash and its node count */
+    private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+    /** slots per bucket */
+    private static final int WAYS = 2;
+
+    /** hash of the position in each slot, 0 if the slot is empty */
+    private final long[] keys;
+    /** nodes searched to disprove the position in each slot */
+    private final int[] work;
+    /** mask selecting a bucket from a hash */
+    private final int bucketMask;
+
+    private long hits;
+    private long misses;
+    private long stores;
+    private long evictions;
+
+    /**
+     * Create a table that uses at most the given amount of memory.
+     *
+     * @param maxBytes memory cap for the table's arrays, in bytes
+     */
+    public TranspositionTable(long maxBytes) {
+        long buckets = Long.highestOneBit(Math.max(1, maxBytes / (SLOT_BYTES * WAYS)));
+        buckets = Math.min(buckets, 1 << 29);
+        this.keys = new long[(int) buckets * WAYS];
+        this.work = new int[(int) buckets * WAYS];
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Has this position already been proven unsolvable?
+     *
+     * @param hash the position's hash
+     * @return true if it is in the table
+     */
+    public boolean isDead(long hash) {
+        long key = keyOf(hash);
+        int slot = bucketOf(key);
+        for (int i = slot; i < slot + WAYS; i++) {
+            if (keys[i] == key) {
+                hits++;
+                return true;
+            }
+        }
+        misses++;
+        return false;
+    }
+
+    /**
+     * Record that a position has no solution.
+     *
+     * @param hash the position's hash
+     * @param nodes nodes searched to prove it, used to pick what to evict
+     */
+    public void markDead(long hash, long nodes) {
+        long key = keyOf(hash);
+        int slot = bucketOf(key);
+        int victim = slot;
+        for (int i = slot; i < slot + WAYS; i++) {
+            if (keys[i] == key || keys[i] == 0) {
+                victim = i;
+                break;
+            }
+            if (work[i] < work[victim]) {
+                victim = i;
+            }
+        }
+        if (keys[victim] != 0 && keys[victim] != key) {
+            evictions++;
+        }
+        keys[victim] = key;
+        work[victim] = (int) Math.min(nodes, Integer.MAX_VALUE);
+        stores++;
+    }
+
+    /** Forget every position and reset the counters. */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(work, 0);
+        hits = misses = stores = evictions = 0;
+    }
+
+    /** @return number of lookups that found a dead position */
+    public long getHits() { return hits; }
+
+    /** @return number of lookups that found nothing */
+    public long getMisses() { return misses; }
+
+    /** @return number of positions recorded */
+    public long getStores() { return stores; }
+
+    /** @return number of entries pushed out to make room */
+    public long getEvictions() { return evictions; }
+
+    /** @return number of slots in the table */
+    public int capacity() { return keys.length; }
+
+    /**
+     * Fraction of lookups that hit.
+     *
+     * @return hit rate between 0 and 1
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("memo: %d hits, %d misses (%.1f%%), %d stored, %d evicted, %d slots",
+                hits, misses, 100 * hitRate(), stores, evictions, capacity());
+    }
+
+    /** 0 marks an empty slot, so keep real keys away from it */
+    private static long keyOf(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    private int bucketOf(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * WAYS;
+    }
+}
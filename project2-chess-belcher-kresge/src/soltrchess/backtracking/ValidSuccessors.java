@@ -0,0 +1,64 @@
+package soltrchess.backtracking;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Turns a collection of successors, valid and invalid, into an iterator
+ * over the valid ones. This is how configurations that only implement
+ * getSuccessors() take part in the lazy Configuration.successors() API:
+ * the collection is still built up front, but each child is only checked
+ * when the search asks for it, so a search that stops early checks no
+ * more than it uses.
+ */
+class ValidSuccessors implements Iterator<Configuration> {
+    /** the successors not yet looked at */
+    private final Iterator<Configuration> candidates;
+    /** the validity test */
+    private final Predicate<Configuration> valid;
+    /** the next valid successor, null if it has not been found yet */
+    private Configuration next;
+
+    /**
+     * Adapt a configuration's getSuccessors().
+     *
+     * @param parent the configuration
+     */
+    ValidSuccessors(Configuration parent) {
+        this(parent.getSuccessors().iterator(), child -> child.isValid(parent));
+    }
+
+    /**
+     * Filter successors with any validity test, e.g. one that also reports
+     * the rejects.
+     *
+     * @param candidates the successors, valid and invalid
+     * @param valid true for the successors to keep
+     */
+    ValidSuccessors(Iterator<Configuration> candidates, Predicate<Configuration> valid) {
+        this.candidates = candidates;
+        this.valid = valid;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && candidates.hasNext()) {
+            Configuration child = candidates.next();
+            if (valid.test(child)) {
+                next = child;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Configuration next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Configuration child = next;
+        next = null;
+        return child;
+    }
+}
@@ -0,0 +1,35 @@
+package soltrchess.backtracking;
+
+import java.util.SplittableRandom;
+
+import static soltrchess.backtracking.SoltrChessConfig.*;
+
+/**
+ * Zobrist keys for hashing Solitaire Chess boards. A board's hash is the
+ * key for its size XORed with KEYS[piece][square] for each of its pieces, so
+ * a capture updates it with a few XORs instead of rehashing the whole board.
+ * Empty squares hash to 0.
+ */
+final class Zobrist {
+    /** random keys indexed by piece code, then square */
+    static final long[][] KEYS = new long[LETTERS.length()][AttackTable.MAX_DIM * AttackTable.MAX_DIM];
+    /** random keys indexed by rows and columns, so boards of different sizes differ */
+    static final long[][] SIZES = new long[AttackTable.MAX_DIM + 1][AttackTable.MAX_DIM + 1];
+
+    static {
+        // fixed seed so hashes are the same from run to run
+        SplittableRandom random = new SplittableRandom(0x5017C4E55L);
+        for (int piece = PAWN; piece < LETTERS.length(); piece++) {
+            for (int square = 0; square < KEYS[piece].length; square++) {
+                KEYS[piece][square] = random.nextLong();
+            }
+        }
+        for (long[] row : SIZES) {
+            for (int cols = 0; cols < row.length; cols++) {
+                row[cols] = random.nextLong();
+            }
+        }
+    }
+
+    private Zobrist() {}
+}
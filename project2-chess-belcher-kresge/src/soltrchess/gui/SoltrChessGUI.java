@@ -1,6 +1,7 @@
 package soltrchess.gui;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -10,13 +11,15 @@ import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import soltrchess.SoltrChess;
+import soltrchess.model.ModelEvent;
 import soltrchess.model.Observer;
 import soltrchess.model.SoltrChessModel;
 
 import java.io.FileNotFoundException;
+import java.time.Duration;
 import java.util.List;
 
-public class SoltrChessGUI extends Application implements Observer<SoltrChessModel, String> {
+public class SoltrChessGUI extends Application implements Observer<SoltrChessModel, ModelEvent> {
     /**
      * the board is the Model
      */
@@ -42,7 +45,15 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
 
 
     private Label top = new Label("Game File: ");
-    private chessButton[][] buttons = new chessButton[10][10];
+    private chessButton[][] buttons;
+    /** the squares outlined as targets of the selected piece, bit row * cols + col */
+    private long highlighted;
+    /** the window's layout; the board sits in its center */
+    private BorderPane borderPane;
+    /** the window */
+    private Stage stage;
+    /** how long Solve and Hint search before giving up */
+    private static final Duration SEARCH_TIME = Duration.ofSeconds(30);
 
 
     /*
@@ -56,6 +67,8 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
         String filename=params.getUnnamed().get(0);
         model = new SoltrChessModel(filename, null);
         model.addObserver(this);
+        // searches run in the background; their results land on the FX thread
+        model.setUpdateExecutor(Platform::runLater);
 
 
 
@@ -63,15 +76,28 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
 
     //update
     @Override
-    //labelUpdate is message displayed
-    public void update(SoltrChessModel subject, String labelUpdate) {
+    //the event's message is displayed, and only the squares it changed are redrawn
+    public void update(SoltrChessModel subject, ModelEvent event) {
         this.model = subject;
-        this.top.setText(labelUpdate);
-        //buttons[model.getB()[0]][model.getB()[1]].changeImage();
-        //buttons[model.getA()[0]][model.getA()[1]].changeImage();
-        for (int row = 0; row < SoltrChessModel.ROWS; row++) {
-            for (int col = 0; col < SoltrChessModel.COLS; col++) {
-                buttons[col][row].changeImage();
+        if (event.getMessage() != null) {
+            this.top.setText(event.getMessage());
+        }
+        if (!event.isBoardChanged()) {
+            return;
+        }
+        if (buttons.length != model.getCols() || buttons[0].length != model.getRows()) {
+            // a new game of a different size needs a new grid
+            borderPane.setCenter(makeGridPane());
+            stage.sizeToScene();
+            highlighted = 0;
+            return;
+        }
+        highlight(0);
+        for (int row = 0; row < model.getRows(); row++) {
+            for (int col = 0; col < model.getCols(); col++) {
+                if (event.isChanged(row * model.getCols() + col)) {
+                    buttons[col][row].changeImage();
+                }
             }
         }
     }
@@ -82,7 +108,8 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
     @Override
     public void start(Stage stage) throws Exception {
         // create the border panes that holds the grid and labels
-        BorderPane borderPane = new BorderPane();
+        this.stage = stage;
+        borderPane = new BorderPane();
         HBox footer = new HBox(4);
         HBox header = new HBox(1);
         top = new Label("Game File: " + model.filename);
@@ -107,11 +134,18 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
         });
         Button RestartButton = new Button("Restart");
         RestartButton.setOnAction(event -> model.restart());
+        Button UndoButton = new Button("Undo");
+        UndoButton.setOnAction(event -> model.undo());
+        Button RedoButton = new Button("Redo");
+        RedoButton.setOnAction(event -> model.redo());
         Button SolveButton = new Button("Solve");
-        RestartButton.setOnAction(event -> model.solve());
+        SolveButton.setOnAction(event -> model.solveAsync(SEARCH_TIME));
         Button HintButton = new Button("Hint");
-        RestartButton.setOnAction(event -> model.hint());
-        footer.getChildren().addAll(NewGameButton, RestartButton, SolveButton,HintButton);
+        HintButton.setOnAction(event -> model.hintAsync(SEARCH_TIME));
+        Button CancelButton = new Button("Cancel");
+        CancelButton.setOnAction(event -> model.cancelSearch());
+        footer.getChildren().addAll(NewGameButton, RestartButton, UndoButton, RedoButton, SolveButton,HintButton,
+                CancelButton);
 
 
         // store the grid into the scene and display it
@@ -129,18 +163,19 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
      */
     public GridPane makeGridPane() {
         GridPane gridpane = new GridPane();
-        gridpane.addColumn(SoltrChessModel.COLS);
-        gridpane.addRow(SoltrChessModel.ROWS);
-        for (int x = 0; x < SoltrChessModel.COLS; x++) {
-            for (int y = 0; y < SoltrChessModel.ROWS; y++) {
+        gridpane.addColumn(model.getCols());
+        gridpane.addRow(model.getRows());
+        buttons = new chessButton[model.getCols()][model.getRows()];
+        for (int x = 0; x < model.getRows(); x++) {
+            for (int y = 0; y < model.getCols(); y++) {
                 chessButton disc = new chessButton(x, y);
                 disc.setOnAction(event -> disc.callMakeMove());
                 gridpane.add(disc, y, x); //flipped x y
                 buttons[y][x] = disc;
             }
         }
-        for (int row = 0; row < SoltrChessModel.ROWS; row++) {
-            for (int col = 0; col < SoltrChessModel.COLS; col++) {
+        for (int row = 0; row < model.getRows(); row++) {
+            for (int col = 0; col < model.getCols(); col++) {
                 buttons[col][row].changeImage();
             }
         }
@@ -148,6 +183,22 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
     }
 
 
+    /**
+     * Outline the squares a selected piece can capture, clearing the
+     * squares outlined before.
+     *
+     * @param targets bit row * cols + col set for each square to outline
+     */
+    private void highlight(long targets) {
+        int cols = model.getCols();
+        for (long squares = highlighted | targets; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            buttons[square % cols][square / cols].setStyle(
+                    (targets >>> square & 1) != 0 ? "-fx-border-color: gold; -fx-border-width: 4" : "");
+        }
+        highlighted = targets;
+    }
+
     //public static void main(String[] args) {
     //    Application.launch(args);
     //}
@@ -212,6 +263,7 @@ public class SoltrChessGUI extends Application implements Observer<SoltrChessMod
 
         public void callMakeMove() {
             model.makeMove(col, row);
+            highlight(model.isSourceSelected() ? model.legalTargets(row, col) : 0);
         }
 
     }
@@ -0,0 +1,181 @@
+package soltrchess.model;
+
+import soltrchess.backtracking.IterativeBacktracker;
+import soltrchess.backtracking.MoveList;
+import soltrchess.backtracking.SearchMonitor;
+import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.backtracking.SolutionCache;
+import soltrchess.backtracking.SolvabilityTable;
+import soltrchess.backtracking.TranspositionTable;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Answers hint and solve requests for the model without starting over each
+ * time. It keeps the last solution it found, along with the hash of every
+ * board on the way, so while the player follows the suggested moves each
+ * new hint is a lookup. If the player goes off the path, only the new board
+ * is solved, and the memo of dead positions built up by earlier searches is
+ * kept, so nothing proven before is searched again. With a solution cache,
+ * boards solved in earlier runs are not searched at all.
+ * <p>
+ * It is not thread safe; the model only uses it from one thread at a time.
+ */
+class HintEngine {
+    /** nextMove() result for a board with no solution */
+    static final int NO_SOLUTION = -1;
+    /** nextMove() result for a board that is already solved */
+    static final int SOLVED = -2;
+    /** memory cap for the memo of dead positions */
+    private static final long MEMO_BYTES = 8L << 20;
+
+    /** precomputed answers for small boards, null if none was given */
+    private final SolvabilityTable table;
+    /** solutions from earlier runs, null if none was given or it failed */
+    private SolutionCache cache;
+    /** dead positions found by every search so far, made on first use */
+    private TranspositionTable memo;
+    /** searches with the memo, keeping its frames from one search to the next */
+    private IterativeBacktracker solver;
+    /** the cached solution, null if there is none */
+    private MoveList path;
+    /** hashes[i] is the hash of the board before move i of the path */
+    private long[] hashes;
+    /** how far along the path the player was last seen */
+    private int index;
+
+    /**
+     * Create a hint engine.
+     *
+     * @param table precomputed answers for small boards, may be null
+     * @param cache solutions from earlier runs, may be null
+     */
+    HintEngine(SolvabilityTable table, SolutionCache cache) {
+        this.table = table;
+        this.cache = cache;
+    }
+
+    /**
+     * Get the next move towards a solution.
+     *
+     * @param position the current board
+     * @param monitor checks in on any search this needs, and may stop it
+     * @return the move packed as a MoveList move, SOLVED if the board is
+     *         already solved, or NO_SOLUTION if it cannot be solved
+     * @throws CancellationException if the monitor stopped the search
+     */
+    int nextMove(SoltrChessConfig position, SearchMonitor monitor) {
+        if (position.isGoal()) {
+            return SOLVED;
+        }
+        if (!follow(position, monitor)) {
+            return NO_SOLUTION;
+        }
+        return MoveList.pack(path.getFrom(index), path.getTo(index));
+    }
+
+    /**
+     * Get the rest of a solution.
+     *
+     * @param position the current board
+     * @param monitor checks in on any search this needs, and may stop it
+     * @return the moves from position to a goal, or null if there are none
+     * @throws CancellationException if the monitor stopped the search
+     */
+    MoveList solve(SoltrChessConfig position, SearchMonitor monitor) {
+        if (position.isGoal()) {
+            return MoveList.EMPTY;
+        }
+        return follow(position, monitor) ? path.subList(index, path.size()) : null;
+    }
+
+    /**
+     * Find the position on the cached path, solving from it if it is not
+     * there. Afterwards path and index point at the next move to play.
+     *
+     * @param position the current board, not a goal
+     * @param monitor checks in on the search, if there is one
+     * @return false if there is no solution from position
+     */
+    private boolean follow(SoltrChessConfig position, SearchMonitor monitor) {
+        long hash = position.getHash();
+        if (path != null) {
+            // usually the player is where they were, or one move further;
+            // after an undo or a restart they are somewhere behind
+            for (int k = 0; k < path.size(); k++) {
+                int i = (index + k) % path.size();
+                if (hashes[i] == hash) {
+                    index = i;
+                    return true;
+                }
+            }
+        }
+        if (memo == null) {
+            memo = new TranspositionTable(MEMO_BYTES);
+            solver = new IterativeBacktracker(memo);
+        }
+        MoveList moves;
+        if (table != null && table.covers(position)) {
+            moves = table.solve(position);
+        } else if (cache != null) {
+            try {
+                moves = cache.solve(position, board -> search(board, monitor));
+            } catch (IOException e) {
+                System.err.println("Solution cache dropped: " + e.getMessage());
+                cache = null;
+                moves = search(position, monitor);
+            }
+        } else {
+            moves = search(position, monitor);
+        }
+        if (moves == null) {
+            return false;
+        }
+        path = moves;
+        hashes = new long[moves.size()];
+        index = 0;
+        SoltrChessConfig board = position;
+        for (int i = 0; i < moves.size(); i++) {
+            hashes[i] = board.getHash();
+            board = board.play(moves.getFrom(i), moves.getTo(i));
+        }
+        return true;
+    }
+
+    /**
+     * Search for a solution with the memo.
+     */
+    private MoveList search(SoltrChessConfig position, SearchMonitor monitor) {
+        solver.setMonitor(monitor);
+        try {
+            return solver.solveWithPath(position);
+        } finally {
+            solver.setMonitor(SearchMonitor.NONE);
+        }
+    }
+
+    /**
+     * Forget the cached solution, e.g. when the board is restarted. The
+     * memo of dead positions is kept, since they are dead in any game.
+     */
+    void invalidate() {
+        path = null;
+        hashes = null;
+        index = 0;
+    }
+
+    /**
+     * Forget everything, for a new game.
+     */
+    void reset() {
+        invalidate();
+        memo = null;
+        solver = null;
+    }
+
+    /** @return the memo of dead positions, null before the first search */
+    TranspositionTable getMemo() {
+        return memo;
+    }
+}
@@ -0,0 +1,151 @@
+package soltrchess.model;
+
+import soltrchess.backtracking.SoltrChessConfig;
+
+/**
+ * Every capture that can be made on the model's board, kept up to date as
+ * captures are made and taken back. Each square has a mask of the squares
+ * its piece can capture, and a capture only changes the masks that involve
+ * the two squares it touches, so the work per capture is one pass over the
+ * pieces with no rule checks. Whether any capture is left, and where a
+ * piece can go, are then lookups.
+ */
+class LegalMoveSet {
+    /** piece letters indexed by PIECE ordinal */
+    private static final String LETTERS = "-PRNBKQ";
+
+    /** capture masks on an empty board, indexed by PIECE ordinal, then square */
+    private final long[][] attacks;
+    /** the PIECE ordinal on each square, row * cols + col */
+    private final int[] occupant;
+    /** number of columns on the board */
+    private final int cols;
+    /** bit s is set if square s holds a piece */
+    private long occupied;
+    /** bit t of targets[s] is set if the piece on s can capture the piece on t */
+    private final long[] targets;
+    /** bit s is set if the piece on s has at least one capture */
+    private long movable;
+    /** number of pieces on the board */
+    private int pieces;
+
+    /**
+     * Build the set for a board.
+     *
+     * @param board the board, up to 8x8
+     * @throws IllegalArgumentException if the board is too large
+     */
+    LegalMoveSet(SoltrChessModel.PIECE[][] board) {
+        int rows = board.length;
+        this.cols = rows == 0 ? 0 : board[0].length;
+        int squares = rows * cols;
+        this.attacks = new long[LETTERS.length()][squares];
+        for (int piece = 1; piece < LETTERS.length(); piece++) {
+            for (int square = 0; square < squares; square++) {
+                attacks[piece][square] = SoltrChessConfig.captureMask(rows, cols, LETTERS.charAt(piece), square);
+            }
+        }
+        this.occupant = new int[squares];
+        this.targets = new long[squares];
+        reset(board);
+    }
+
+    /**
+     * Work everything out again, e.g. after a restart.
+     *
+     * @param board the board, of the size the set was built for
+     */
+    void reset(SoltrChessModel.PIECE[][] board) {
+        occupied = 0;
+        pieces = 0;
+        for (int square = 0; square < occupant.length; square++) {
+            occupant[square] = board[square / cols][square % cols].ordinal();
+            if (occupant[square] != 0) {
+                occupied |= 1L << square;
+                pieces++;
+            }
+        }
+        movable = 0;
+        for (long rest = occupied; rest != 0; rest &= rest - 1) {
+            int square = Long.numberOfTrailingZeros(rest);
+            targets[square] = attacks[occupant[square]][square] & occupied;
+            if (targets[square] != 0) {
+                movable |= 1L << square;
+            }
+        }
+    }
+
+    /**
+     * A capture was made. Only the two squares' own masks are rebuilt;
+     * every other piece just loses the square that was emptied.
+     *
+     * @param from square of the capturing piece
+     * @param to square of the captured piece
+     */
+    void capture(int from, int to) {
+        int piece = occupant[from];
+        occupant[from] = 0;
+        occupant[to] = piece;
+        occupied &= ~(1L << from);
+        pieces--;
+        targets[from] = 0;
+        movable &= ~(1L << from);
+        long emptied = ~(1L << from);
+        for (long rest = occupied; rest != 0; rest &= rest - 1) {
+            int square = Long.numberOfTrailingZeros(rest);
+            targets[square] = square == to ? attacks[piece][to] & occupied : targets[square] & emptied;
+            movable = targets[square] != 0 ? movable | 1L << square : movable & ~(1L << square);
+        }
+    }
+
+    /**
+     * A capture was taken back: the capturing piece returns to from and
+     * the captured piece reappears on to.
+     *
+     * @param from square the capturing piece came from
+     * @param to square of the captured piece
+     * @param captured the captured piece
+     */
+    void uncapture(int from, int to, SoltrChessModel.PIECE captured) {
+        int piece = occupant[to];
+        occupant[from] = piece;
+        occupant[to] = captured.ordinal();
+        long refilled = 1L << from;
+        occupied |= refilled;
+        pieces++;
+        for (long rest = occupied; rest != 0; rest &= rest - 1) {
+            int square = Long.numberOfTrailingZeros(rest);
+            if (square == from || square == to) {
+                targets[square] = attacks[occupant[square]][square] & occupied;
+            } else {
+                targets[square] |= attacks[occupant[square]][square] & refilled;
+            }
+            movable = targets[square] != 0 ? movable | 1L << square : movable & ~(1L << square);
+        }
+    }
+
+    /**
+     * Get the squares the piece on a square can capture.
+     *
+     * @param square row * cols + col
+     * @return bit row * cols + col set for each square it can capture, 0
+     *         if the square is empty
+     */
+    long targets(int square) {
+        return targets[square];
+    }
+
+    /**
+     * @return true if no piece can capture another but more than one is left
+     */
+    boolean isStalemate() {
+        return movable == 0 && pieces > 1;
+    }
+
+    /**
+     * @return the number of pieces on the board
+     */
+    int getPieceCount() {
+        return pieces;
+    }
+}
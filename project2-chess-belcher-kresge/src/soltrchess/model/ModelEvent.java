@@ -0,0 +1,220 @@
+package soltrchess.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed in the model, sent to its observers. A view only needs to
+ * redraw the squares in getChanged(), or the whole board if
+ * isRedrawAll(). Events that happen in a burst, like the moves of a
+ * solution being played, are merged into one event so the views draw one
+ * frame for all of them.
+ */
+public final class ModelEvent {
+    /** the text to show, null if there is none */
+    private final String message;
+    /** bit row * cols + col is set for each square whose contents changed */
+    private final long changed;
+    /** the board was replaced, possibly with one of a different size */
+    private final boolean redrawAll;
+    /** the captures made, in order */
+    private final List<Capture> captures;
+    /** the game status after the event, filled in as it is sent */
+    private final SoltrChessModel.Status status;
+    /** did the status change? */
+    private final boolean statusChanged;
+    /** the latest report from a running search, null if none */
+    private final Progress progress;
+
+    /**
+     * One piece capturing another.
+     */
+    public static final class Capture {
+        /** square of the capturing piece, row * cols + col */
+        public final int from;
+        /** square of the captured piece */
+        public final int to;
+        /** the capturing piece */
+        public final SoltrChessModel.PIECE piece;
+        /** the captured piece */
+        public final SoltrChessModel.PIECE captured;
+
+        Capture(int from, int to, SoltrChessModel.PIECE piece, SoltrChessModel.PIECE captured) {
+            this.from = from;
+            this.to = to;
+            this.piece = piece;
+            this.captured = captured;
+        }
+    }
+
+    /**
+     * How far a background search has got.
+     */
+    public static final class Progress {
+        /** positions visited so far */
+        public final long nodes;
+        /** positions visited per second */
+        public final long rate;
+        /** how many moves deep the search is */
+        public final int depth;
+
+        Progress(long nodes, long rate, int depth) {
+            this.nodes = nodes;
+            this.rate = rate;
+            this.depth = depth;
+        }
+    }
+
+    private ModelEvent(String message, long changed, boolean redrawAll, List<Capture> captures,
+                       SoltrChessModel.Status status, boolean statusChanged, Progress progress) {
+        this.message = message;
+        this.changed = changed;
+        this.redrawAll = redrawAll;
+        this.captures = captures;
+        this.status = status;
+        this.statusChanged = statusChanged;
+        this.progress = progress;
+    }
+
+    /**
+     * A message that changes nothing on the board.
+     */
+    static ModelEvent message(String message) {
+        return new ModelEvent(message, 0, false, List.of(), null, false, null);
+    }
+
+    /**
+     * Some squares changed.
+     */
+    static ModelEvent squares(String message, long changed) {
+        return new ModelEvent(message, changed, false, List.of(), null, false, null);
+    }
+
+    /**
+     * A capture was made.
+     */
+    static ModelEvent capture(String message, Capture capture) {
+        return new ModelEvent(message, 1L << capture.from | 1L << capture.to, false, List.of(capture),
+                null, false, null);
+    }
+
+    /**
+     * The whole board was replaced.
+     */
+    static ModelEvent newBoard(String message) {
+        return new ModelEvent(message, 0, true, List.of(), null, false, null);
+    }
+
+    /**
+     * A background search reported in.
+     */
+    static ModelEvent progress(String message, Progress progress) {
+        return new ModelEvent(message, 0, false, List.of(), null, false, progress);
+    }
+
+    /**
+     * Stamp the event with the game status as it is sent.
+     *
+     * @param current the status now
+     * @param previous the status the observers last saw
+     * @return this event with the status filled in
+     */
+    ModelEvent withStatus(SoltrChessModel.Status current, SoltrChessModel.Status previous) {
+        return new ModelEvent(message, changed, redrawAll, captures, current, current != previous, progress);
+    }
+
+    /**
+     * Combine this event with one that came after it. The squares and
+     * captures of both are kept; the message and progress are the later
+     * event's, where it has them.
+     *
+     * @param later the next event
+     * @return one event standing for both
+     */
+    ModelEvent merge(ModelEvent later) {
+        List<Capture> both = captures;
+        if (!later.captures.isEmpty()) {
+            both = new ArrayList<>(captures);
+            both.addAll(later.captures);
+            both = Collections.unmodifiableList(both);
+        }
+        return new ModelEvent(later.message != null ? later.message : message,
+                changed | later.changed, redrawAll || later.redrawAll, both, null, false,
+                later.progress != null ? later.progress : progress);
+    }
+
+    /**
+     * @return the text to show, or null if there is none
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Get the squares whose contents changed. Bit row * cols + col is set
+     * for each one.
+     *
+     * @return the squares as a bit mask
+     */
+    public long getChanged() {
+        return changed;
+    }
+
+    /**
+     * Did the square at a row and column change?
+     *
+     * @param square row * cols + col
+     * @return true if it needs redrawing
+     */
+    public boolean isChanged(int square) {
+        return redrawAll || (changed >>> square & 1) != 0;
+    }
+
+    /**
+     * @return true if the board was replaced and must be redrawn in full
+     */
+    public boolean isRedrawAll() {
+        return redrawAll;
+    }
+
+    /**
+     * @return true if anything on the board changed
+     */
+    public boolean isBoardChanged() {
+        return redrawAll || changed != 0;
+    }
+
+    /**
+     * @return the captures made, in the order they were made
+     */
+    public List<Capture> getCaptures() {
+        return captures;
+    }
+
+    /**
+     * @return the game status after this event
+     */
+    public SoltrChessModel.Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the game status changed
+     */
+    public boolean isStatusChanged() {
+        return statusChanged;
+    }
+
+    /**
+     * @return the latest search progress, or null if there is none
+     */
+    public Progress getProgress() {
+        return progress;
+    }
+
+    @Override
+    public String toString() {
+        return message != null ? message : "";
+    }
+}
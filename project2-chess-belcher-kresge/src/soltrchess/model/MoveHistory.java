@@ -0,0 +1,129 @@
+package soltrchess.model;
+
+import java.util.Arrays;
+
+/**
+ * The board a game started from and the captures made since, so moves can
+ * be undone and redone and the game restarted without reading the puzzle
+ * file again. The starting board is copied once and never changed; each
+ * capture is kept as one int holding its squares and the two pieces, which
+ * is all it takes to play it either way.
+ */
+class MoveHistory {
+    /** bits for a square in a packed capture */
+    private static final int SQUARE_BITS = 6;
+    /** bits for a piece in a packed capture */
+    private static final int PIECE_BITS = 3;
+    /** the pieces, in ordinal order */
+    private static final SoltrChessModel.PIECE[] PIECES = SoltrChessModel.PIECE.values();
+
+    /** the starting board, row by row */
+    private final SoltrChessModel.PIECE[] start;
+    /** number of columns on the board */
+    private final int cols;
+    /** the captures made, packed by pack(); those past position were undone */
+    private int[] moves = new int[16];
+    /** number of captures that can be redone up to */
+    private int size;
+    /** number of captures currently on the board */
+    private int position;
+
+    /**
+     * Start a history from a board.
+     *
+     * @param board the starting board, which is copied
+     */
+    MoveHistory(SoltrChessModel.PIECE[][] board) {
+        this.cols = board.length == 0 ? 0 : board[0].length;
+        this.start = new SoltrChessModel.PIECE[board.length * cols];
+        for (int row = 0; row < board.length; row++) {
+            System.arraycopy(board[row], 0, start, row * cols, cols);
+        }
+    }
+
+    /**
+     * Remember a capture just made. Any undone captures can no longer be
+     * redone.
+     *
+     * @param from square of the capturing piece, row * cols + col
+     * @param to square of the captured piece
+     * @param piece the capturing piece
+     * @param captured the captured piece
+     */
+    void record(int from, int to, SoltrChessModel.PIECE piece, SoltrChessModel.PIECE captured) {
+        if (position == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[position++] = from | to << SQUARE_BITS
+                | piece.ordinal() << 2 * SQUARE_BITS | captured.ordinal() << (2 * SQUARE_BITS + PIECE_BITS);
+        size = position;
+    }
+
+    /**
+     * @return true if there is a capture to undo
+     */
+    boolean canUndo() {
+        return position > 0;
+    }
+
+    /**
+     * @return true if there is an undone capture to redo
+     */
+    boolean canRedo() {
+        return position < size;
+    }
+
+    /**
+     * Step back over the last capture. The caller puts the pieces back.
+     *
+     * @return the capture, to be read with fromOf() and the rest
+     */
+    int undo() {
+        return moves[--position];
+    }
+
+    /**
+     * Step forward over the next undone capture. The caller makes it again.
+     *
+     * @return the capture, to be read with fromOf() and the rest
+     */
+    int redo() {
+        return moves[position++];
+    }
+
+    /**
+     * Put the starting board back. The captures made are kept, so they can
+     * all be redone.
+     *
+     * @param board the board to overwrite, of the starting board's size
+     * @return bit row * cols + col set for each square that changed
+     */
+    long rewind(SoltrChessModel.PIECE[][] board) {
+        long changed = 0;
+        for (int square = 0; square < start.length; square++) {
+            SoltrChessModel.PIECE[] row = board[square / cols];
+            if (row[square % cols] != start[square]) {
+                row[square % cols] = start[square];
+                changed |= 1L << square;
+            }
+        }
+        position = 0;
+        return changed;
+    }
+
+    static int fromOf(int move) {
+        return move & (1 << SQUARE_BITS) - 1;
+    }
+
+    static int toOf(int move) {
+        return move >>> SQUARE_BITS & (1 << SQUARE_BITS) - 1;
+    }
+
+    static SoltrChessModel.PIECE pieceOf(int move) {
+        return PIECES[move >>> 2 * SQUARE_BITS & (1 << PIECE_BITS) - 1];
+    }
+
+    static SoltrChessModel.PIECE capturedOf(int move) {
+        return PIECES[move >>> (2 * SQUARE_BITS + PIECE_BITS) & (1 << PIECE_BITS) - 1];
+    }
+}
@@ -0,0 +1,89 @@
+package soltrchess.model;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A hint or solve the model is running in the background. The search can
+ * be cancelled at any time, and gives up by itself if it has a deadline
+ * and runs past it. Either way the board is left as it was and observers
+ * are told the search stopped.
+ */
+public final class SearchHandle {
+    /** System.nanoTime() after which the search gives up, Long.MAX_VALUE if never */
+    private final long deadline;
+    /** set by cancel(), read by the search thread */
+    private volatile boolean cancelled;
+    /** completed once the result is on the board and observers have been told */
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    /**
+     * Create a handle for a search that is about to start.
+     *
+     * @param timeout how long the search may take, null for no limit
+     */
+    SearchHandle(Duration timeout) {
+        this.deadline = timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos();
+    }
+
+    /**
+     * Stop the search. It stops within a few milliseconds of the next
+     * check; if it has already finished this does nothing.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if cancel() has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true once the search has finished, been cancelled or timed out
+     */
+    public boolean isDone() {
+        return done.isDone();
+    }
+
+    /**
+     * Get a future that completes when the search is over. It completes
+     * normally once the result has been applied to the model, and with a
+     * CancellationException if the search was cancelled, ran out of time,
+     * or finished after the board had changed under it.
+     *
+     * @return the future
+     */
+    public CompletableFuture<Void> done() {
+        return done;
+    }
+
+    /**
+     * Should the search keep going?
+     *
+     * @param now the current System.nanoTime()
+     * @return false if it was cancelled or is past its deadline
+     */
+    boolean keepGoing(long now) {
+        return !cancelled && (deadline == Long.MAX_VALUE || now - deadline < 0);
+    }
+
+    /**
+     * The search finished and its result has been dealt with.
+     */
+    void finish() {
+        done.complete(null);
+    }
+
+    /**
+     * The search stopped without a result.
+     *
+     * @param reason why it stopped, a CancellationException unless the
+     *               search failed
+     */
+    void abandon(RuntimeException reason) {
+        done.completeExceptionally(reason);
+    }
+}
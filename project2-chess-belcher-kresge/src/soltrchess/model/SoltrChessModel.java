@@ -3,16 +3,28 @@ package soltrchess.model;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import soltrchess.SoltrChess;
-import soltrchess.backtracking.Backtracker;
-import soltrchess.backtracking.Configuration;
+import soltrchess.backtracking.MoveList;
+import soltrchess.backtracking.PuzzleFile;
+import soltrchess.backtracking.SearchMonitor;
 import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.backtracking.SolutionCache;
+import soltrchess.backtracking.SolvabilityTable;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Optional;
-import java.util.Scanner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 /**
@@ -25,13 +37,19 @@ import java.util.Scanner;
 
 public class SoltrChessModel {
     /** the number of rows */
-    public static  int ROWS = 4;
+    private int rows;
     /** the number of columns */
-    public static  int COLS = 4;
+    private int cols;
+    /** precomputed answers for small boards, null if no table was given */
+    private static final SolvabilityTable TABLE = SolvabilityTable.openDefault();
+    /** solutions from earlier runs and other processes, null if no cache was given */
+    private static final SolutionCache CACHE = SolutionCache.openDefault();
+    /** remembers the last solution so repeated hints are cheap */
+    private final HintEngine hints = new HintEngine(TABLE, CACHE);
     /** the status of the game */
     private Status status;
-    /** number of pieces on board*/
-    private int boardPieces;
+    /** the captures that can be made, kept up to date with the board */
+    private LegalMoveSet legal;
     /** states for the position you are trying to move from*/
     private int aRow = -1;
     private int aCol = -1;
@@ -45,8 +63,30 @@ public class SoltrChessModel {
     public String filename;
     /** the game board */
     private PIECE[][] board;
+    /** the starting board and the captures since, for undo, redo and restart */
+    private MoveHistory history;
+    /** moves found by the last solve, null if none */
+    private MoveList solution;
+    /** how often a running search reports its progress, in nanoseconds */
+    private static final long PROGRESS_NANOS = 250_000_000L;
+    /** runs hint and solve searches one at a time, made by the first background search */
+    private ExecutorService searcher;
+    /** where background results and progress are handed back, e.g. the UI thread; null until set */
+    private Executor updates;
+    /** the latest background search, null if none was started */
+    private SearchHandle search;
+    /** bumped whenever the board changes, so a result for an old board is dropped */
+    private int boardVersion;
     /** the observers of this model */
-    private List<Observer<SoltrChessModel, String>> observers;
+    private List<Observer<SoltrChessModel, ModelEvent>> observers;
+    /** how many frames are open; events are held back until the last one closes */
+    private int frameDepth;
+    /** the events of the open frames, merged, null if none */
+    private ModelEvent pending;
+    /** events posted from the search thread and not yet delivered, merged */
+    private final AtomicReference<ModelEvent> posted = new AtomicReference<>();
+    /** the status the observers last saw */
+    private Status lastStatus;
     /** the game status */
     public enum Status {
         NOT_OVER,
@@ -79,19 +119,23 @@ public class SoltrChessModel {
             status= copy.getGameStatus();
         }
         else {
-            Scanner f = new Scanner(new File(filename));
+            PuzzleFile puzzle;
+            try {
+                puzzle = PuzzleFile.read(filename);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new FileNotFoundException(filename + ": " + e.getMessage());
+            }
+            String[][] lines = puzzle.getBoard();
             //Assign states
-            status=Status.NOT_OVER;
             this.filename=filename;
-            boardPieces=0;
-            board=new PIECE[ROWS][COLS];
-                for (int row=0; row<ROWS; ++row){
-                    String line = f.nextLine();
-                    String[] lst = line.split(" ");
-                    for (int col=0; col<COLS; ++col) {
+            rows=lines.length;
+            cols=lines[0].length;
+            board=new PIECE[rows][cols];
+                for (int row=0; row<rows; ++row){
+                    String[] lst = lines[row];
+                    for (int col=0; col<cols; ++col) {
                         if (lst[col].equals("-")) {
                             board[row][col] = PIECE.NONE;
-                            boardPieces--;
                         }
                         else if (lst[col].equals("P")) {
                             board[row][col] = PIECE.PAWN;
@@ -111,14 +155,20 @@ public class SoltrChessModel {
                         else if(lst[col].equals("B")) {
                             board[row][col] = PIECE.BISHOP;
                         }
-                        boardPieces++;
                     }
                 }
+            history=new MoveHistory(board);
+            try {
+                legal=new LegalMoveSet(board);
+            } catch (IllegalArgumentException e) {
+                throw new FileNotFoundException(filename + ": " + e.getMessage());
+            }
+            updateStatus();
+            lastStatus=status;
 
 
             //Add Observers to model
             this.observers = new LinkedList<>();
-            f.close();
         }
     }
 
@@ -127,14 +177,61 @@ public class SoltrChessModel {
      *
      * @param observer the observer
      */
-    public void addObserver(Observer<SoltrChessModel, String> observer) {
+    public void addObserver(Observer<SoltrChessModel, ModelEvent> observer) {
         this.observers.add(observer);
     }
 
-    /** When the model changes, the observers are notified via their update() method */
+    /** Tell the observers something that changes nothing on the board */
     private void notifyObservers(String message) {
-        for (Observer<SoltrChessModel, String> obs: this.observers ) {
-            obs.update(this,message);
+        notifyObservers(ModelEvent.message(message));
+    }
+
+    /**
+     * When the model changes, the observers are notified via their update()
+     * method, unless a frame is open, in which case the event is merged
+     * into the frame's and sent when it closes.
+     */
+    private void notifyObservers(ModelEvent event) {
+        if (frameDepth > 0) {
+            pending = pending == null ? event : pending.merge(event);
+            return;
+        }
+        event = event.withStatus(status, lastStatus);
+        lastStatus = status;
+        for (Observer<SoltrChessModel, ModelEvent> obs: this.observers ) {
+            obs.update(this,event);
+        }
+    }
+
+    /**
+     * Hold back events until the matching endFrame(), so a burst of changes
+     * reaches the observers as one event.
+     */
+    private void beginFrame() {
+        frameDepth++;
+    }
+
+    /**
+     * Close a frame; closing the outermost one sends its events as one.
+     */
+    private void endFrame() {
+        if (--frameDepth == 0 && pending != null) {
+            ModelEvent event = pending;
+            pending = null;
+            notifyObservers(event);
+        }
+    }
+
+    /**
+     * Send an event from the search thread through the update executor.
+     * Events posted faster than the executor delivers them are merged, so
+     * a busy UI thread sees one event however many were posted.
+     *
+     * @param event the event
+     */
+    private void post(ModelEvent event) {
+        if (posted.getAndAccumulate(event, (queued, next) -> queued == null ? next : queued.merge(next)) == null) {
+            updates.execute(() -> notifyObservers(posted.getAndSet(null)));
         }
     }
 
@@ -158,10 +255,10 @@ public class SoltrChessModel {
     }
 
     /**
-     * boolean cases for board movements. For each type of soltrchess
-     * piece, it checks if the chosen movement follows the established
-     * rules for that piece and returns either true or false as to whether
-     * that move is legal.
+     * checks if the chosen movement follows the rules for the piece being
+     * moved and captures a piece, by looking the target up in the legal
+     * move set; the rules for each type of piece live in the backtracker's
+     * capture masks, which the set is built from.
      * @param aRow the row of the piece being moved
      * @param aCol the column of the piece being moved
      * @param bRow the row the selected piece is being moved to
@@ -173,63 +270,51 @@ public class SoltrChessModel {
         this.aCol = aCol;
         this.bCol = bCol;
         this.bRow = bRow;
-        PIECE curr_piece = getContents(aRow, aCol);
-        PIECE nxt_piece = getContents(bRow, bCol);
-        //checks if both coordinates have a valid piece
-        if (curr_piece == PIECE.NONE || nxt_piece == PIECE.NONE) {
-            return false;
-        }
-        //checks to make sure square you're going to isn't same as square you're in
-        if (aRow==bRow &&aCol==bCol) {
-            return false;
-        }
         /*check if move being made is in bounds; used for PTUI*/
-        if (aRow > ROWS || aCol > COLS || aRow < 0 || aCol < 0) {
+        if (bRow >= rows || bCol >= cols || bRow < 0 || bCol < 0) {
             return false;
         }
-        switch (curr_piece) {
-            case PAWN:
-                return (aRow-1==bRow && (aCol-1==bCol||aCol+1==bCol));
-            case BISHOP:
-                return (Math.abs((bCol - aCol)) == Math.abs((bRow - aRow)));
-            case ROOK:
-                //case if moving vertically
-                if (bCol == aCol) {
-                    return (Math.abs(bRow - aRow) > 0);
-                }
-                //case if moving horizontally
-                else if (bRow == aRow) {
-                    return (Math.abs(bCol - aCol) > 0);
-                } else {
-                    return false;
-                }
-            case KING:
-                if (bRow == aRow) {
-                    return (Math.abs(bCol - aCol) == 1);
-                }
-                else if (bCol == aCol) {
-                    return (Math.abs(bRow - aRow) == 1);
-                }
-                else {
-                    return (Math.abs(bRow - aRow) == 1 && Math.abs(bCol - aCol) == 1);
-                }
-            case QUEEN:
-                //uses combination of rook and bishop cases
-                if (bCol == aCol) {
-                    return (Math.abs(bRow - aRow) > 0);
-                }
-                //case if moving horizontally
-                else if (bRow == aRow) {
-                    return (Math.abs(bCol - aCol) > 0);
-                } else {
-                    return (Math.abs((bCol - aCol)) == Math.abs((bRow - aRow)));
-                }
-            case KNIGHT:
-                //checks if knight's total movement is equivalent to three spaces
-                return ((Math.abs(bRow - aRow) + Math.abs(bCol - aCol) == 3) && (Math.abs(bRow - aRow) != 3) && Math.abs(bCol - aCol) != 3);
+        return (legalTargets(aRow, aCol) >>> (bRow * cols + bCol) & 1) != 0;
+    }
 
+    /**
+     * Get the squares the piece on a square can capture, from the legal
+     * move set the model keeps, so a view can highlight them without
+     * checking each square with isValidMove().
+     *
+     * @param row the row of the piece
+     * @param col the column of the piece
+     * @return bit row * cols + col set for each square it can capture; 0
+     *         if the square is empty or off the board
+     */
+    public long legalTargets(int row, int col) {
+        if (row < 0 || col < 0 || row >= rows || col >= cols) {
+            return 0;
+        }
+        return legal.targets(row * cols + col);
+    }
+
+    /**
+     * Has a piece been chosen to move, with the target still to come?
+     *
+     * @return true between the two clicks of a move
+     */
+    public boolean isSourceSelected() {
+        return aRow != -1 && aCol != -1;
+    }
+
+    /**
+     * Work out the game status from the legal move set: won with one piece
+     * left, stalemate if more are left but none can capture.
+     */
+    private void updateStatus() {
+        if (legal.getPieceCount() <= 1) {
+            status = Status.WON;
+        } else if (legal.isStalemate()) {
+            status = Status.STALE_MATE;
+        } else {
+            status = Status.NOT_OVER;
         }
-        return false;
     }
 
     /**
@@ -237,8 +322,12 @@ public class SoltrChessModel {
      * precondition: isvalid method returned true
      */
     public void claimPiece() {
+        history.record(aRow * cols + aCol, bRow * cols + bCol, board[aRow][aCol], board[bRow][bCol]);
         board[bRow][bCol]=getContents(aRow,aCol);
         board[aRow][aCol]=PIECE.NONE;
+        legal.capture(aRow * cols + aCol, bRow * cols + bCol);
+        updateStatus();
+        boardVersion++;
     }
 
     /**
@@ -251,70 +340,392 @@ public class SoltrChessModel {
         this.filename = String.valueOf(selectedFile);
         SoltrChessModel newGame= new SoltrChessModel(filename, null);
         this.board=newGame.board;
-        notifyObservers("New Game");
+        this.history=newGame.history;
+        this.legal=newGame.legal;
+        this.rows=newGame.rows;
+        this.cols=newGame.cols;
+        this.status=newGame.status;
+        resetPlay();
+        onSearcher(hints::reset);
+        notifyObservers(ModelEvent.newBoard("New Game"));
     }
 
     public void newGamePTUI(String filename) throws FileNotFoundException{
         this.filename = filename;
         SoltrChessModel newGame = new SoltrChessModel(filename, null);
         this.board = newGame.board;
-        notifyObservers("New Game");
+        this.history = newGame.history;
+        this.legal = newGame.legal;
+        this.rows = newGame.rows;
+        this.cols = newGame.cols;
+        this.status = newGame.status;
+        resetPlay();
+        onSearcher(hints::reset);
+        notifyObservers(ModelEvent.newBoard("New Game"));
     }
 
     /**
-     * Set board to original layout
+     * Set board to original layout, from the snapshot kept when the file
+     * was read. The captures made are kept, so redo() can replay them.
      */
     public void restart(){
-        try {
-            this.board=new SoltrChessModel(filename,null).getBoard();
-            notifyObservers("Restarting Game!");
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        long changed = history.rewind(board);
+        legal.reset(board);
+        updateStatus();
+        resetPlay();
+        onSearcher(hints::invalidate);
+        notifyObservers(ModelEvent.squares("Restarting Game!", changed));
+    }
+
+    /**
+     * The board was replaced or rewound: forget the half-made move, the
+     * last solution and any search for the old board.
+     */
+    private void resetPlay() {
+        aRow = -1;
+        aCol = -1;
+        solution = null;
+        cancelSearch();
+        boardVersion++;
+    }
+
+    /**
+     * Take back the last capture, whether the player or solve() made it.
+     */
+    public void undo() {
+        if (!history.canUndo()) {
+            notifyObservers("Nothing to undo");
+            return;
+        }
+        int move = history.undo();
+        int from = MoveHistory.fromOf(move);
+        int to = MoveHistory.toOf(move);
+        PIECE piece = MoveHistory.pieceOf(move);
+        board[from / cols][from % cols] = piece;
+        board[to / cols][to % cols] = MoveHistory.capturedOf(move);
+        legal.uncapture(from, to, MoveHistory.capturedOf(move));
+        updateStatus();
+        aRow = -1;
+        aCol = -1;
+        cancelSearch();
+        boardVersion++;
+        notifyObservers(ModelEvent.squares("Undid " + piece + " to (" + to / cols + "," + to % cols + ")",
+                1L << from | 1L << to));
+    }
+
+    /**
+     * Make the last undone capture again.
+     */
+    public void redo() {
+        if (!history.canRedo()) {
+            notifyObservers("Nothing to redo");
+            return;
         }
+        int move = history.redo();
+        int from = MoveHistory.fromOf(move);
+        int to = MoveHistory.toOf(move);
+        PIECE piece = MoveHistory.pieceOf(move);
+        board[to / cols][to % cols] = piece;
+        board[from / cols][from % cols] = PIECE.NONE;
+        legal.capture(from, to);
+        updateStatus();
+        aRow = -1;
+        aCol = -1;
+        cancelSearch();
+        boardVersion++;
+        notifyObservers(ModelEvent.capture("Redid " + piece + " to (" + to / cols + "," + to % cols + ")",
+                new ModelEvent.Capture(from, to, piece, MoveHistory.capturedOf(move))));
     }
-    public void hint(){}
 
+    /**
+     * @return true if there is a capture undo() can take back
+     */
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    /**
+     * @return true if there is a capture redo() can make again
+     */
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    /**
+     * Suggest the next move towards a solution from the current board. The
+     * last solution is remembered, so following the hints costs no search.
+     * Any search needed runs before this returns, so a view on a UI thread
+     * should use hintAsync() instead.
+     */
+    public void hint(){
+        SoltrChessConfig position = modelToConfigBoard();
+        showHint(waitFor(() -> hints.nextMove(position, SearchMonitor.NONE)));
+    }
+
+    /**
+     * Suggest the next move without waiting for the search. Observers hear
+     * how the search is going every so often, then get the hint, all
+     * through the update executor.
+     *
+     * @param timeout how long to search before giving up, null for no limit
+     * @return the running search, which can be cancelled
+     * @throws IllegalStateException if no update executor has been set
+     */
+    public SearchHandle hintAsync(Duration timeout) {
+        SoltrChessConfig position = modelToConfigBoard();
+        return startSearch(timeout, "Looking for a hint", monitor -> hints.nextMove(position, monitor), this::showHint);
+    }
+
+    /**
+     * Tell the observers about a hint.
+     *
+     * @param move the move packed as a MoveList move, or one of
+     *             HintEngine's SOLVED and NO_SOLUTION
+     */
+    private void showHint(int move) {
+        if (move == HintEngine.NO_SOLUTION) {
+            notifyObservers("No solution from here");
+        } else if (move == HintEngine.SOLVED) {
+            notifyObservers("Already solved");
+        } else {
+            int from = MoveList.fromOf(move);
+            int to = MoveList.toOf(move);
+            notifyObservers("Hint: (" + from / cols + "," + from % cols + ") to ("
+                    + to / cols + "," + to % cols + ")");
+        }
+    }
+
+    /**
+     * Solve the puzzle from the current board. The solution is kept as a
+     * move list and replayed onto the board one capture at a time, so the
+     * views can show each step. The search runs before this returns, so a
+     * view on a UI thread should use solveAsync() instead.
+     */
     public void solve(){
-        Backtracker backtracker = new Backtracker();
-        Configuration config= new SoltrChessConfig( modelToConfigBoard(),-1,-1,"-");
-            Optional<Configuration> solvedBoard= backtracker.solve(config);
-            if(solvedBoard.isPresent()){
-                ConfigToModelBoard( solvedBoard.get().getBoard());
-            }
-            notifyObservers("Solved");
+        SoltrChessConfig position = modelToConfigBoard();
+        playSolution(waitFor(() -> hints.solve(position, SearchMonitor.NONE)));
+    }
 
+    /**
+     * Solve the puzzle without waiting for the search. Observers hear how
+     * the search is going every so often, then see the solution played,
+     * all through the update executor. If the board changes before the
+     * search finishes, the solution is thrown away.
+     *
+     * @param timeout how long to search before giving up, null for no limit
+     * @return the running search, which can be cancelled
+     * @throws IllegalStateException if no update executor has been set
+     */
+    public SearchHandle solveAsync(Duration timeout) {
+        SoltrChessConfig position = modelToConfigBoard();
+        return startSearch(timeout, "Solving", monitor -> hints.solve(position, monitor), this::playSolution);
     }
 
-    public SoltrChessConfig modelToConfigBoard(){
-        String letter="-";
-        String[][] newBoard=new String[4][4];
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                PIECE piece= this.board[i][j];
-                switch (piece) {
-                    case PAWN:
-                        letter="P";
-                    case BISHOP:
-                        letter="B";
-                    case ROOK:
-                        letter="R";
-                    case KING:
-                        letter="K";
-                    case QUEEN:
-                        letter="Q";
-                    case KNIGHT:
-                        letter="N";
-                    case NONE:
-                        letter="-";
+    /**
+     * Replay a solution onto the board, telling the observers each move.
+     *
+     * @param moves the solution, null if there is none
+     */
+    private void playSolution(MoveList moves) {
+        this.solution = moves;
+        if (moves == null) {
+            notifyObservers("No solution");
+            return;
+        }
+        beginFrame();
+        for (int i = 0; i < moves.size(); i++) {
+            int from = moves.getFrom(i);
+            int to = moves.getTo(i);
+            aRow = from / cols;
+            aCol = from % cols;
+            bRow = to / cols;
+            bCol = to % cols;
+            PIECE piece = board[aRow][aCol];
+            ModelEvent.Capture capture = new ModelEvent.Capture(from, to, piece, board[bRow][bCol]);
+            claimPiece();
+            notifyObservers(ModelEvent.capture(piece + " to (" + bRow + "," + bCol + ")", capture));
+        }
+        aRowCopy = aRow;
+        aColCopy = aCol;
+        aRow = -1;
+        aCol = -1;
+        notifyObservers("Solved");
+        endFrame();
+    }
+
+    /**
+     * Stop the background search, if one is running.
+     */
+    public void cancelSearch() {
+        if (search != null) {
+            search.cancel();
+        }
+    }
+
+    /**
+     * Choose the thread background search results and progress reports
+     * are delivered on. A JavaFX view passes Platform::runLater so the
+     * board only changes on the application thread. A result changes the
+     * board, so it must be delivered on the thread that makes the moves;
+     * there is no default, and hintAsync() and solveAsync() refuse to run
+     * until this is called.
+     *
+     * @param updates runs each delivery
+     */
+    public void setUpdateExecutor(Executor updates) {
+        this.updates = updates;
+    }
+
+    /**
+     * Run a search on the search thread and hand its result back through
+     * the update executor. Any earlier background search is cancelled.
+     *
+     * @param timeout how long the search may take, null for no limit
+     * @param activity what the search is doing, for progress messages
+     * @param job the search, given a monitor to check in with
+     * @param apply what to do with the result, on the update executor
+     * @return the running search
+     * @throws IllegalStateException if no update executor has been set
+     */
+    private <T> SearchHandle startSearch(Duration timeout, String activity,
+                                         Function<SearchMonitor, T> job, Consumer<T> apply) {
+        if (updates == null) {
+            throw new IllegalStateException("Set an update executor before searching in the background");
+        }
+        cancelSearch();
+        SearchHandle handle = new SearchHandle(timeout);
+        search = handle;
+        int version = boardVersion;
+        searcher().execute(() -> {
+            T result;
+            try {
+                if (!handle.keepGoing(System.nanoTime())) {
+                    throw new CancellationException("stopped before it started");
+                }
+                result = job.apply(monitor(handle, activity));
+            } catch (CancellationException e) {
+                updates.execute(() -> {
+                    notifyObservers(activity + (handle.isCancelled() ? " cancelled" : " ran out of time"));
+                    handle.abandon(e);
+                });
+                return;
+            } catch (RuntimeException e) {
+                updates.execute(() -> handle.abandon(e));
+                return;
+            }
+            updates.execute(() -> {
+                if (handle.isCancelled() || version != boardVersion) {
+                    handle.abandon(new CancellationException("the board changed during the search"));
+                } else {
+                    apply.accept(result);
+                    handle.finish();
+                }
+            });
+        });
+        return handle;
+    }
+
+    /**
+     * Make the monitor for a background search: it stops the search when
+     * the handle says so, and every PROGRESS_NANOS tells the observers how
+     * far it has got.
+     *
+     * @param handle the search
+     * @param activity what the search is doing
+     * @return the monitor
+     */
+    private SearchMonitor monitor(SearchHandle handle, String activity) {
+        long begun = System.nanoTime();
+        long[] lastReport = {begun};
+        return (nodes, depth) -> {
+            long now = System.nanoTime();
+            if (!handle.keepGoing(now)) {
+                return false;
+            }
+            if (now - lastReport[0] >= PROGRESS_NANOS) {
+                lastReport[0] = now;
+                long rate = nodes * 1_000_000_000L / Math.max(1, now - begun);
+                String message = String.format("%s... %,d positions, %,d/s, depth %d", activity, nodes, rate, depth);
+                if (!handle.isCancelled()) {
+                    post(ModelEvent.progress(message, new ModelEvent.Progress(nodes, rate, depth)));
                 }
-                newBoard[i][j]=letter;
             }
+            return true;
+        };
+    }
+
+    /**
+     * Run a search and wait for it. The hint engine is only used from one
+     * thread at a time: the search thread once there is one, the caller
+     * before that.
+     *
+     * @param job the search
+     * @return its result
+     */
+    private <T> T waitFor(Supplier<T> job) {
+        cancelSearch();
+        return searcher == null ? job.get() : CompletableFuture.supplyAsync(job, searcher).join();
+    }
+
+    /**
+     * Run a change to the hint engine in turn with the searches.
+     *
+     * @param task the change
+     */
+    private void onSearcher(Runnable task) {
+        if (searcher == null) {
+            task.run();
+        } else {
+            searcher.execute(task);
         }
-        return null;
     }
 
-    public void ConfigToModelBoard(String[][] board){
+    /**
+     * @return the search thread, started on first use
+     */
+    private ExecutorService searcher() {
+        if (searcher == null) {
+            searcher = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "soltrchess-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return searcher;
+    }
 
+    /**
+     * Get the moves found by the last call to solve().
+     *
+     * @return the solution, or null if there was none or solve() has not run
+     */
+    public MoveList getSolution() {
+        return solution;
+    }
+
+    /**
+     * Convert the model's board to a board for the backtracker.
+     *
+     * @return the current board as a backtracking configuration
+     */
+    public SoltrChessConfig modelToConfigBoard(){
+        String[][] newBoard=new String[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                String letter;
+                switch (this.board[i][j]) {
+                    case PAWN: letter="P"; break;
+                    case BISHOP: letter="B"; break;
+                    case ROOK: letter="R"; break;
+                    case KING: letter="K"; break;
+                    case QUEEN: letter="Q"; break;
+                    case KNIGHT: letter="N"; break;
+                    default: letter="-";
+                }
+                newBoard[i][j]=letter;
+            }
+        }
+        return new SoltrChessConfig(newBoard);
     }
 
     /**
@@ -332,26 +743,23 @@ public class SoltrChessModel {
             System.out.println("target selected");
             bCol=newRow;
             bRow=newCol;
-            // check if the game has been won, tied, or is still going on
-            if (hasWonGame()) {
-                this.status = Status.WON;
-                //add a notify observers
+            // no move is allowed once the game has been won or is stuck
+            if (status == Status.WON) {
                 notifyObservers("Game has been won!");
-            } else if (boardPieces == 2 ) { //have a better check for invalid move
-
-            notifyObservers("Stale Mate!");
-             }
-            else {
-                this.status = Status.NOT_OVER;
-                if (isValidMove(aRow, aCol, bRow, bCol)) {
-                    claimPiece();
-                    notifyObservers(getContents(bRow,bCol)+" to ("+bRow+","+bCol+")");
-                    if (boardPieces == 1) {
-                        notifyObservers("Game has been won!");
-                    }
-                } else {
-                    notifyObservers("Move not allowed.");//case for invalid move
+            } else if (status == Status.STALE_MATE) {
+                notifyObservers("Stale Mate! No piece can capture another.");
+            } else if (isValidMove(aRow, aCol, bRow, bCol)) {
+                ModelEvent.Capture capture = new ModelEvent.Capture(aRow * cols + aCol, bRow * cols + bCol,
+                        board[aRow][aCol], board[bRow][bCol]);
+                claimPiece();
+                notifyObservers(ModelEvent.capture(getContents(bRow,bCol)+" to ("+bRow+","+bCol+")", capture));
+                if (status == Status.WON) {
+                    notifyObservers("Game has been won!");
+                } else if (status == Status.STALE_MATE) {
+                    notifyObservers("Stale Mate! No piece can capture another.");
                 }
+            } else {
+                notifyObservers("Move not allowed.");//case for invalid move
             }
             aRowCopy=aRow;
             aColCopy=aCol;
@@ -365,7 +773,7 @@ public class SoltrChessModel {
      * @return boolean value of whether board has one piece left
      */
     public boolean hasWonGame() {
-        return boardPieces<=1;
+        return legal.getPieceCount()<=1;
     }
 
     /**
@@ -376,9 +784,9 @@ public class SoltrChessModel {
     public String toString() {
         StringBuilder builder = new StringBuilder();
 
-        for (int row = 0; row < ROWS; ++row) {
+        for (int row = 0; row < rows; ++row) {
             builder.append(row);
-            for (int col = 0; col < COLS; ++col) {
+            for (int col = 0; col < cols; ++col) {
                 if (this.board[row][col] == PIECE.NONE) {
                     builder.append("- ");
                 } else if (this.board[row][col] == PIECE.BISHOP) {
@@ -400,6 +808,22 @@ public class SoltrChessModel {
         return builder.toString();
     }
 
+    /**
+     * Get the number of rows on the board.
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns on the board.
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
     /**
      * getter function for the soltrchess board model
      * @return instance of the 2D board array
@@ -1,5 +1,6 @@
 package soltrchess.ptui;
 
+import soltrchess.model.ModelEvent;
 import soltrchess.model.Observer;
 import soltrchess.model.SoltrChessModel;
 
@@ -12,7 +13,7 @@ import java.util.Scanner;
  * Authors: Nathan Belcher and Keegan Kresge
  */
 
-public class SoltrChessPTUI implements Observer<SoltrChessModel, String> {
+public class SoltrChessPTUI implements Observer<SoltrChessModel, ModelEvent> {
 
     public SoltrChessModel model;
     /**
@@ -34,69 +35,123 @@ public class SoltrChessPTUI implements Observer<SoltrChessModel, String> {
      */
     private void initializeView() {this.model.addObserver(this); }
 
+    /**
+     * Print the event's message, and the board only if the event changed
+     * it. A terminal cannot repaint single squares, so the board is printed
+     * once per event; a solution being played arrives as one event, so it
+     * is printed once at the end rather than after every move.
+     */
     @Override
-    public void update(SoltrChessModel soltrChessModel, String s) {
+    public void update(SoltrChessModel soltrChessModel, ModelEvent event) {
+        if (event.getMessage() != null) {
+            System.out.println(event.getMessage());
+        }
+        if (event.isBoardChanged()) {
+            System.out.print(this.model);
+        }
+        if (event.isStatusChanged()) {
+            System.out.println("Status " + this.model.getGameStatus());
+        }
+    }
+
+    /**
+     * Print the whole board and the game status.
+     */
+    private void printBoard() {
         System.out.print(this.model);
         System.out.println("Status " + this.model.getGameStatus());
     }
+    /**
+     * Print the squares a chosen piece can capture.
+     *
+     * @param targets bit row * cols + col set for each square
+     */
+    private void printTargets(long targets) {
+        if (targets == 0) {
+            System.out.println("That piece cannot capture anything");
+            return;
+        }
+        StringBuilder line = new StringBuilder("Can capture:");
+        for (long squares = targets; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            line.append(" (").append(square / model.getCols()).append(',').append(square % model.getCols()).append(')');
+        }
+        System.out.println(line);
+    }
+
     /*
     ************************* THE CONTROLLER SECTION *************************************
      */
 
     /**
      * run method for PTUI. Allows users to move pieces, quit game,
-     * choose a new game, restart game, get a hint from backtracker, or
+     * choose a new game, restart game, undo or redo a move, get a hint from backtracker, or
      * have backtracker solve board
      */
     public void run() {
         System.out.println("Welcome to SoltrChess!\n");
-        update(this.model, null); //change second parameter
+        printBoard();
         try (Scanner in = new Scanner(System.in)) {
-            System.out.print("\n[Move,New,Restart,Hint,Solve,Quit]\n>");
-            while (this.model.getGameStatus() == SoltrChessModel.Status.NOT_OVER) {
+            System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
+            // a won or stuck game keeps taking commands, so it can be undone or restarted
+            commands:
+            while (in.hasNextLine()) {
                 String choice = in.nextLine();
                 switch (choice) {
-                    case "Quit", "quit" -> System.out.println("Quitting Game"); //TODO: add a different solution to this case
+                    case "Quit", "quit" -> {
+                        System.out.println("Quitting Game");
+                        break commands;
+                    }
 
-                    case "Move", "move" -> { //TODO: see why it's not selecting pieces
+                    case "Move", "move" -> {
                         System.out.println("starting row: ");
                         int aRow = in.nextInt();
                         System.out.println("starting column: ");
                         int aCol = in.nextInt();
-                        model.makeMove(aRow, aCol);
+                        // makeMove takes the column first, as the GUI's buttons pass it
+                        model.makeMove(aCol, aRow);
+                        printTargets(model.legalTargets(aRow, aCol));
                         System.out.println("Move to row: ");
                         int bRow = in.nextInt();
                         System.out.println("move to column: ");
                         int bCol = in.nextInt();
-                        model.makeMove(bRow, bCol);
-                        update(model, null); //TODO: set null to use the string outputted by notifyobservers instead
-                        System.out.print("\n[Move,New,Restart,Hint,Solve,Quit]\n>");
+                        model.makeMove(bCol, bRow);
+                        System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
                     }
 
                     case "New", "new" -> {
                         System.out.println("Select a new filename\n");
                         String filename = in.nextLine();
                         model.newGamePTUI(filename);
-                        update(model, null); //TODO
-                        System.out.print("\n[Move,New,Restart,Hint,Solve,Quit]\n>");
+                        System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
                     }
 
                     case "Restart", "restart" -> {
                         model.restart();
-                        update(model, null); //TODO
-                        System.out.print("\n[Move,New,Restart,Hint,Solve,Quit]\n>");
+                        System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
+                    }
+
+                    case "Undo", "undo" -> {
+                        model.undo();
+                        System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
+                    }
+
+                    case "Redo", "redo" -> {
+                        model.redo();
+                        System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
                     }
 
                     case "Hint", "hint" -> {
                         model.hint();
-                        update(model, null); //TODO
-                        System.out.print("\n[Move,New,Restart,Hint,Solve,Quit]\n>");
+                        System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
                     }
 
                     case "Solve", "solve" -> {
                         model.solve();
-                        update(model, null); //TODO
-                        System.out.print("\n[Move,New,Restart,Hint,Solve,Quit]\n>");
+                        if (model.getSolution() != null) {
+                            System.out.print("Solution:\n" + model.getSolution().format(model.getCols()));
+                        }
+                        System.out.print("\n[Move,New,Restart,Undo,Redo,Hint,Solve,Quit]\n>");
                     }
                 }
 
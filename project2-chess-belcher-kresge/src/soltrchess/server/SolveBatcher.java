@@ -0,0 +1,228 @@
+package soltrchess.server;
+
+import soltrchess.backtracking.IterativeBacktracker;
+import soltrchess.backtracking.MoveList;
+import soltrchess.backtracking.SoltrChessConfig;
+import soltrchess.backtracking.Symmetry;
+import soltrchess.backtracking.TranspositionTable;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solves boards handed in by many request threads on a few solver
+ * threads. Each solver thread takes whatever requests are waiting, up to a
+ * batch at a time, lingering briefly for more if only a few are there, and
+ * solves the batch with its own backtracker. Boards in a batch that are the
+ * same once turned to their canonical orientation are solved once, and
+ * each solver keeps its memo of dead positions from batch to batch, so a
+ * busy server does less work per board than one solving each request on
+ * its own.
+ */
+public class SolveBatcher implements Closeable {
+    /** requests waiting for a solver */
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    /** the solver threads */
+    private final List<Thread> solvers = new ArrayList<>();
+    /** the most requests a solver takes at once */
+    private final int maxBatch;
+    /** how long a solver waits for a batch to fill, in nanoseconds */
+    private final long lingerNanos;
+    /** how long one board may be searched, in nanoseconds */
+    private final long timeoutNanos;
+    /** batches solved so far */
+    private final AtomicLong batches = new AtomicLong();
+    /** requests answered so far */
+    private final AtomicLong answered = new AtomicLong();
+    /** boards searched so far; requests minus those shared within a batch */
+    private final AtomicLong searched = new AtomicLong();
+
+    /**
+     * What the solvers found for one board.
+     */
+    public static class Answer {
+        /** the moves, null if there is no solution or the search timed out */
+        public final MoveList moves;
+        /** did the search run out of time? */
+        public final boolean timedOut;
+        /** configurations visited, 0 if another board in the batch was the same */
+        public final long nodes;
+        /** time spent waiting for a solver, in nanoseconds */
+        public final long queueNanos;
+        /** time spent solving, in nanoseconds */
+        public final long solveNanos;
+        /** number of requests in the batch this one was solved in */
+        public final int batchSize;
+
+        Answer(MoveList moves, boolean timedOut, long nodes, long queueNanos, long solveNanos, int batchSize) {
+            this.moves = moves;
+            this.timedOut = timedOut;
+            this.nodes = nodes;
+            this.queueNanos = queueNanos;
+            this.solveNanos = solveNanos;
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * A board waiting to be solved.
+     */
+    private static class Request {
+        /** the board */
+        final SoltrChessConfig board;
+        /** when it was handed in, from System.nanoTime() */
+        final long submitted = System.nanoTime();
+        /** completed by the solver */
+        final CompletableFuture<Answer> answer = new CompletableFuture<>();
+
+        Request(SoltrChessConfig board) {
+            this.board = board;
+        }
+    }
+
+    /**
+     * Start the solver threads.
+     *
+     * @param solvers number of solver threads
+     * @param maxBatch the most requests a solver takes at once
+     * @param lingerMicros how long a solver waits for a batch to fill
+     * @param memoBytes memory cap for each solver's memo of dead positions
+     * @param timeoutMillis how long one board may be searched
+     */
+    public SolveBatcher(int solvers, int maxBatch, long lingerMicros, long memoBytes, long timeoutMillis) {
+        if (solvers < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("solvers and batch size must be positive");
+        }
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int i = 0; i < solvers; i++) {
+            Thread thread = new Thread(() -> run(memoBytes), "soltrchess-solver-" + i);
+            thread.setDaemon(true);
+            this.solvers.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Hand a board in to be solved.
+     *
+     * @param board the board
+     * @return completed with the answer by a solver thread
+     */
+    public CompletableFuture<Answer> submit(SoltrChessConfig board) {
+        Request request = new Request(board);
+        queue.add(request);
+        return request.answer;
+    }
+
+    /**
+     * A solver thread: take a batch, solve it, repeat until interrupted.
+     */
+    private void run(long memoBytes) {
+        IterativeBacktracker backtracker = new IterativeBacktracker(
+                memoBytes > 0 ? new TranspositionTable(memoBytes) : null);
+        List<Request> batch = new ArrayList<>(maxBatch);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - batch.size());
+                long lingerUntil = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatch) {
+                    long wait = lingerUntil - System.nanoTime();
+                    Request more = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (more == null) {
+                        break;
+                    }
+                    batch.add(more);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                solve(backtracker, batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            for (Request request : batch) {
+                request.answer.completeExceptionally(new CancellationException("server stopped"));
+            }
+        }
+    }
+
+    /**
+     * Solve a batch, searching each distinct canonical board once.
+     */
+    private void solve(IterativeBacktracker backtracker, List<Request> batch) {
+        batches.incrementAndGet();
+        Map<SoltrChessConfig, Answer> canonicalAnswers = new HashMap<>();
+        for (Request request : batch) {
+            long start = System.nanoTime();
+            try {
+                Symmetry symmetry = request.board.canonicalSymmetry();
+                SoltrChessConfig canonical = request.board.transform(symmetry);
+                Answer shared = canonicalAnswers.get(canonical);
+                long nodes = 0;
+                if (shared == null) {
+                    shared = search(backtracker, canonical, start);
+                    canonicalAnswers.put(canonical, shared);
+                    searched.incrementAndGet();
+                    nodes = shared.nodes;
+                }
+                MoveList moves = shared.moves == null ? null
+                        : shared.moves.transform(symmetry.inverse(), request.board.getRows(), request.board.getCols());
+                request.answer.complete(new Answer(moves, shared.timedOut, nodes,
+                        start - request.submitted, System.nanoTime() - start, batch.size()));
+            } catch (RuntimeException e) {
+                request.answer.completeExceptionally(e);
+            }
+            answered.incrementAndGet();
+        }
+    }
+
+    /**
+     * Search one canonical board, giving up at the deadline.
+     */
+    private Answer search(IterativeBacktracker backtracker, SoltrChessConfig board, long start) {
+        long deadline = start + timeoutNanos;
+        backtracker.setMonitor((nodes, depth) -> System.nanoTime() - deadline < 0);
+        long nodes = backtracker.getNodes();
+        try {
+            MoveList moves = backtracker.solveWithPath(board);
+            return new Answer(moves, false, backtracker.getNodes() - nodes, 0, 0, 0);
+        } catch (CancellationException e) {
+            return new Answer(null, true, backtracker.getNodes() - nodes, 0, 0, 0);
+        }
+    }
+
+    /**
+     * @return a one line summary of the work done so far
+     */
+    public String stats() {
+        long batchCount = batches.get();
+        long answers = answered.get();
+        return String.format("%d requests in %d batches (%.2f per batch), %d searched, %d queued",
+                answers, batchCount, batchCount == 0 ? 0.0 : (double) answers / batchCount,
+                searched.get(), queue.size());
+    }
+
+    /**
+     * Stop the solver threads. Requests still waiting are cancelled.
+     */
+    @Override
+    public void close() {
+        for (Thread thread : solvers) {
+            thread.interrupt();
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.answer.completeExceptionally(new CancellationException("server stopped"));
+        }
+    }
+}
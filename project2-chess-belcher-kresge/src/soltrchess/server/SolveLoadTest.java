@@ -0,0 +1,199 @@
+package soltrchess.server;
+
+import soltrchess.backtracking.PuzzleFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Puts load on a SolveServer from a number of concurrent clients and
+ * reports the throughput, the latency percentiles and how well requests
+ * were batched. Without a URL it starts a server of its own on a free
+ * loopback port, so the whole test runs on this machine.
+ */
+public class SolveLoadTest {
+    /** the batch size in an answer */
+    private static final Pattern BATCH = Pattern.compile("\"batch\":(\\d+)");
+
+    private static void usage() {
+        System.err.println("Usage: java soltrchess.server.SolveLoadTest "
+                + "[-url http://host:port] [-clients n] [-requests n] puzzle-file-or-directory...");
+        System.exit(1);
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param args the options and the puzzles to send, data by default
+     * @throws Exception if the server cannot be started or a request fails
+     */
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int clients = 64;
+        int requests = 5000;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-url") && i + 1 < args.length) {
+                url = args[++i];
+            } else if (args[i].equals("-clients") && i + 1 < args.length) {
+                clients = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-requests") && i + 1 < args.length) {
+                requests = Integer.parseInt(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                usage();
+            } else {
+                paths.add(Paths.get(args[i]));
+            }
+        }
+        if (paths.isEmpty()) {
+            paths.add(Paths.get("data"));
+        }
+        List<byte[]> puzzles = load(paths);
+        if (puzzles.isEmpty()) {
+            usage();
+        }
+
+        SolveServer server = null;
+        if (url == null) {
+            int solvers = Runtime.getRuntime().availableProcessors();
+            server = new SolveServer(0, new SolveBatcher(solvers, 32, 200, 16 << 20, 10_000));
+            url = "http://localhost:" + server.getPort();
+            System.out.println("Started a server on " + url + " with " + solvers + " solvers");
+        }
+        URL solve = new URL(url + "/solve");
+        try {
+            // warm up the server and the JIT before measuring
+            run(solve, clients, Math.min(requests, 1000), puzzles);
+            long start = System.nanoTime();
+            long[] latencies = run(solve, clients, requests, puzzles);
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            System.out.printf("%d requests from %d clients in %.2f s: %.0f requests/s%n",
+                    requests, clients, elapsed / 1e9, requests / (elapsed / 1e9));
+            System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.90),
+                    percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+            System.out.println(get(new URL(url + "/stats")));
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Read the puzzle files, checking that each one parses.
+     */
+    private static List<byte[]> load(List<Path> paths) throws IOException {
+        List<byte[]> puzzles = new ArrayList<>();
+        for (Path path : paths) {
+            List<Path> files = new ArrayList<>();
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> list = Files.list(path)) {
+                    list.filter(Files::isRegularFile).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+            for (Path file : files) {
+                try {
+                    PuzzleFile.read(file).toConfig();
+                    puzzles.add(Files.readAllBytes(file));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        return puzzles;
+    }
+
+    /**
+     * Send the requests from the clients, round robin over the puzzles.
+     *
+     * @return the latency of each request in nanoseconds
+     */
+    private static long[] run(URL solve, int clients, int requests, List<byte[]> puzzles) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                done.add(pool.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        long start = System.nanoTime();
+                        String answer = post(solve, puzzles.get(i % puzzles.size()));
+                        latencies[i] = System.nanoTime() - start;
+                        Matcher batch = BATCH.matcher(answer);
+                        if (!batch.find()) {
+                            throw new IOException("unexpected answer " + answer);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : done) {
+                client.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return latencies;
+    }
+
+    /**
+     * POST a puzzle and read the answer.
+     */
+    private static String post(URL solve, byte[] puzzle) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) solve.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "text/plain");
+        connection.setFixedLengthStreamingMode(puzzle.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(puzzle);
+        }
+        if (connection.getResponseCode() != 200) {
+            throw new IOException("HTTP " + connection.getResponseCode() + " from " + solve);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * GET a URL and read the answer.
+     */
+    private static String get(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    /**
+     * @return the latency at a fraction of the way through, in milliseconds
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))] / 1e6;
+    }
+}
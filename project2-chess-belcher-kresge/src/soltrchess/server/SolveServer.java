@@ -0,0 +1,263 @@
+package soltrchess.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import soltrchess.backtracking.MoveList;
+import soltrchess.backtracking.PuzzleCorpus;
+import soltrchess.backtracking.PuzzleFile;
+import soltrchess.backtracking.SoltrChessConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A headless solver that answers over HTTP on the loopback interface.
+ *
+ * POST /solve with a puzzle in the text format (Content-Type text/plain)
+ * answers one line of JSON:
+ *
+ *   {"solved":true,"moves":[[r,c,r,c],...],"nodes":N,"queueMillis":Q,
+ *    "solveMillis":S,"totalMillis":T,"batch":B,"timedOut":false}
+ *
+ * where each move is the from row and column then the to row and column.
+ * POST /solve with a packed corpus (application/octet-stream) answers one
+ * such line per puzzle, each with an "index" field, in corpus order.
+ * GET /stats answers a line about the work done so far. Each request runs
+ * on its own thread and waits while its boards go through a SolveBatcher.
+ * <p>
+ * The JDK server writes the headers and body of a reply separately, so
+ * with Nagle's algorithm on every small reply waits out the client's
+ * delayed ACK, about 40ms. main() turns it off for its process; a program
+ * that creates a server itself should run with
+ * -Dsun.net.httpserver.nodelay=true, which applies to every HttpServer in
+ * the JVM.
+ */
+public class SolveServer implements Closeable {
+    /** the default port */
+    public static final int DEFAULT_PORT = 8617;
+    /** the largest request body accepted, in bytes */
+    private static final int MAX_BODY = 16 << 20;
+
+    /** the HTTP server */
+    private final HttpServer http;
+    /** runs the request handlers */
+    private final ExecutorService handlers;
+    /** solves the boards */
+    private final SolveBatcher batcher;
+
+    /**
+     * Start a server on the loopback interface.
+     *
+     * @param port the port, 0 for any free one
+     * @param batcher solves the boards; closed with the server
+     * @throws IOException if the port cannot be bound
+     */
+    public SolveServer(int port, SolveBatcher batcher) throws IOException {
+        this.batcher = batcher;
+        this.handlers = handlerExecutor();
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.setExecutor(handlers);
+        http.createContext("/solve", this::solve);
+        http.createContext("/stats", this::stats);
+        http.start();
+    }
+
+    /**
+     * A thread per request: a virtual thread on runtimes that have them,
+     * otherwise a pooled platform thread. Request threads spend nearly all
+     * their time waiting on the solvers, so either way there are as many as
+     * there are requests in flight.
+     */
+    private static ExecutorService handlerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "soltrchess-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * Handle POST /solve.
+     */
+    private void solve(HttpExchange exchange) throws IOException {
+        long received = System.nanoTime();
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                reply(exchange, 405, "{\"error\":\"use POST\"}\n");
+                return;
+            }
+            String type = exchange.getRequestHeaders().getFirst("Content-Type");
+            boolean packed = type != null && type.startsWith("application/octet-stream");
+            List<SoltrChessConfig> boards = new ArrayList<>();
+            try {
+                byte[] body = readBody(exchange.getRequestBody());
+                if (packed) {
+                    PuzzleCorpus.Cursor cursor = PuzzleCorpus.wrap(ByteBuffer.wrap(body)).cursor();
+                    while (cursor.next()) {
+                        boards.add(cursor.toConfig());
+                    }
+                } else {
+                    String text = new String(body, StandardCharsets.UTF_8);
+                    boards.add(PuzzleFile.parse(Arrays.asList(text.split("\\R"))).toConfig());
+                }
+            } catch (RuntimeException e) {
+                // the body is untrusted; anything it makes the parsers throw is its fault
+                reply(exchange, 400, "{\"error\":" + quote(String.valueOf(e.getMessage())) + "}\n");
+                return;
+            }
+            List<CompletableFuture<SolveBatcher.Answer>> answers = new ArrayList<>(boards.size());
+            for (SoltrChessConfig board : boards) {
+                answers.add(batcher.submit(board));
+            }
+            StringBuilder json = new StringBuilder();
+            for (int i = 0; i < answers.size(); i++) {
+                SolveBatcher.Answer answer;
+                try {
+                    answer = answers.get(i).join();
+                } catch (CancellationException | CompletionException e) {
+                    reply(exchange, 503, "{\"error\":" + quote(String.valueOf(e.getMessage())) + "}\n");
+                    return;
+                }
+                toJson(json, packed ? i : -1, answer, boards.get(i).getCols(), System.nanoTime() - received);
+            }
+            reply(exchange, 200, json.toString());
+        }
+    }
+
+    /**
+     * Handle GET /stats.
+     */
+    private void stats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            reply(exchange, 200, "{\"stats\":" + quote(batcher.stats()) + "}\n");
+        }
+    }
+
+    /**
+     * Read a request body, refusing one that is too large.
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) {
+            throw new IllegalArgumentException("request body over " + MAX_BODY + " bytes");
+        }
+        return body;
+    }
+
+    /**
+     * Send a JSON reply.
+     */
+    private static void reply(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Append one answer as a line of JSON.
+     *
+     * @param index the puzzle's place in a corpus, -1 to leave it out
+     */
+    private static void toJson(StringBuilder json, long index, SolveBatcher.Answer answer, int cols, long total) {
+        json.append('{');
+        if (index >= 0) {
+            json.append("\"index\":").append(index).append(',');
+        }
+        MoveList moves = answer.moves;
+        json.append("\"solved\":").append(moves != null);
+        json.append(",\"moves\":[");
+        for (int i = 0; moves != null && i < moves.size(); i++) {
+            int from = moves.getFrom(i);
+            int to = moves.getTo(i);
+            json.append(i == 0 ? "[" : ",[")
+                    .append(from / cols).append(',').append(from % cols).append(',')
+                    .append(to / cols).append(',').append(to % cols).append(']');
+        }
+        json.append("],\"nodes\":").append(answer.nodes);
+        json.append(",\"queueMillis\":").append(answer.queueNanos / 1_000_000.0);
+        json.append(",\"solveMillis\":").append(answer.solveNanos / 1_000_000.0);
+        json.append(",\"totalMillis\":").append(total / 1_000_000.0);
+        json.append(",\"batch\":").append(answer.batchSize);
+        json.append(",\"timedOut\":").append(answer.timedOut);
+        json.append("}\n");
+    }
+
+    /**
+     * Quote a string for JSON.
+     */
+    private static String quote(String text) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Stop answering, then stop the solvers.
+     */
+    @Override
+    public void close() {
+        http.stop(0);
+        handlers.shutdownNow();
+        batcher.close();
+    }
+
+    /**
+     * Run a server until the process is killed. This turns off Nagle's
+     * algorithm for every HttpServer in the process, unless
+     * sun.net.httpserver.nodelay was already set.
+     *
+     * @param args [port [solvers [batch [linger-micros [memo-mb [timeout-ms]]]]]]
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int solvers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        long linger = args.length > 3 ? Long.parseLong(args[3]) : 200;
+        long memo = args.length > 4 ? Long.parseLong(args[4]) << 20 : 16 << 20;
+        long timeout = args.length > 5 ? Long.parseLong(args[5]) : 10_000;
+        // read once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        SolveServer server = new SolveServer(port, new SolveBatcher(solvers, batch, linger, memo, timeout));
+        System.out.println("Solving on http://localhost:" + server.getPort() + "/solve with "
+                + solvers + " solvers");
+    }
+}